@@ -1,13 +1,21 @@
 package com.chess;
 
 import com.chess.config.DatabaseConfig;
+import com.chess.config.ServerConfig;
 import com.chess.dao.GameDAO;
 import com.chess.dao.MoveDAO;
+import com.chess.dao.RevokedTokenDAO;
 import com.chess.dao.UserDAO;
 import com.chess.http.ChessHttpServer;
 import com.chess.service.AuthService;
 import com.chess.service.GameService;
+import com.chess.service.LeaderboardIndex;
+import com.chess.service.MatchmakingService;
+import com.chess.service.TokenDenylist;
 import com.chess.websocket.ChessWebSocketServer;
+import com.chess.websocket.LobbyWebSocketServer;
+import com.chess.websocket.SpectatorHub;
+import com.chess.websocket.SpectatorWebSocketServer;
 import org.glassfish.tyrus.server.Server;
 import java.io.IOException;
 
@@ -31,16 +39,26 @@ public class Main {
 
             System.out.println("DAOs initialized");
 
-            AuthService authService = new AuthService(userDAO);
+            LeaderboardIndex leaderboard = new LeaderboardIndex();
+            leaderboard.seed(userDAO.findAllRanked());
+            TokenDenylist denylist = new TokenDenylist(new RevokedTokenDAO());
+            AuthService authService = new AuthService(userDAO, leaderboard, denylist);
             GameService gameService = new GameService(gameDAO, moveDAO, userDAO);
+            gameService.getRatings().setListener(leaderboard::updateRatings);
+            MatchmakingService matchmakingService = new MatchmakingService(gameService);
+            gameService.loadWaitingGames();
+            gameService.resumeClocks();
 
             System.out.println("Services initialized");
 
-            ChessWebSocketServer.setServices(authService, gameService);
+            SpectatorHub spectators = new SpectatorHub(ServerConfig.getInstance().getInt("websocket.spectator.writers", 4));
+            ChessWebSocketServer.setServices(authService, gameService, spectators);
+            SpectatorWebSocketServer.setServices(authService, gameService, spectators);
+            LobbyWebSocketServer.setServices(authService, matchmakingService, gameService.getWaitingGames(), userDAO);
             startWebSocketServer();
-            startHttpServer(authService, gameService);
+            startHttpServer(authService, gameService, leaderboard);
 
-            addShutdownHook();
+            addShutdownHook(gameService, matchmakingService, spectators);
 
             System.out.println("Chess server is running!");
 
@@ -53,17 +71,18 @@ public class Main {
         }
     }
 
-    private static void startHttpServer(AuthService authService, GameService gameService)
-            throws IOException {
+    private static void startHttpServer(AuthService authService, GameService gameService,
+                                        LeaderboardIndex leaderboard) throws IOException {
         int httpPort = 8080;
-        ChessHttpServer httpServer = new ChessHttpServer(httpPort, authService, gameService);
+        ChessHttpServer httpServer = new ChessHttpServer(httpPort, authService, gameService, leaderboard);
         httpServer.start();
         System.out.println("HTTP Server started on port " + httpPort);
     }
 
     private static void startWebSocketServer() {
         int wsPort = 8081;
-        Server server = new Server("localhost", wsPort, "/", null, ChessWebSocketServer.class);
+        Server server = new Server("localhost", wsPort, "/", null, ChessWebSocketServer.class,
+                LobbyWebSocketServer.class, SpectatorWebSocketServer.class);
 
         try {
             server.start();
@@ -74,9 +93,14 @@ public class Main {
         }
     }
 
-    private static void addShutdownHook() {
+    private static void addShutdownHook(GameService gameService, MatchmakingService matchmakingService,
+                                        SpectatorHub spectators) {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\nShutting down chess server...");
+            matchmakingService.shutdown();
+            gameService.shutdown();
+            spectators.shutdown();
+            System.out.println("Pending moves flushed");
             DatabaseConfig.getInstance().closeAllConnections();
             System.out.println("Database connections closed");
             System.out.println("Chess server stopped");
@@ -0,0 +1,324 @@
+package com.chess.config;
+
+import com.chess.metrics.LatencyHistogram;
+import org.json.JSONObject;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPool {
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private final int maxSize;
+    private final int minIdle;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutMs;
+    private final long maxLifetimeMs;
+    private final long validationIntervalMs;
+    private final int validationTimeoutSeconds;
+    private final String validationQuery;
+    private final int statementCacheSize;
+    private final int statementSqlLimit;
+
+    private final Semaphore leases;
+    // most recently returned connections sit at the head so hot connections get reused first
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder destroyed = new LongAdder();
+    private final LongAdder acquireTimeouts = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LatencyHistogram acquireLatency = new LatencyHistogram();
+    private final StatementStats statementStats = new StatementStats();
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown;
+
+    public ConnectionPool(String url, String username, String password, Properties props) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+
+        this.maxSize = Integer.parseInt(props.getProperty("db.pool.size", "10"));
+        this.minIdle = Math.min(maxSize, Integer.parseInt(props.getProperty("db.pool.min.idle", "2")));
+        this.acquireTimeoutMs = Long.parseLong(props.getProperty("db.pool.max.wait", "30000"));
+        this.idleTimeoutMs = Long.parseLong(props.getProperty("db.pool.idle.timeout", "600000"));
+        this.maxLifetimeMs = Long.parseLong(props.getProperty("db.pool.max.lifetime", "1800000"));
+        this.validationIntervalMs = Long.parseLong(props.getProperty("db.pool.validation.interval", "5000"));
+        this.validationTimeoutSeconds = Integer.parseInt(props.getProperty("db.pool.validation.timeout", "2"));
+        this.validationQuery = props.getProperty("db.pool.validation.query", "").trim();
+        this.statementCacheSize = Integer.parseInt(props.getProperty("db.pool.prepStmtCacheSize", "250"));
+        this.statementSqlLimit = Integer.parseInt(props.getProperty("db.pool.prepStmtCacheSqlLimit", "2048"));
+
+        this.leases = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() throws SQLException {
+        fillToMinIdle();
+
+        long period = Math.max(1000, Math.min(30000, idleTimeoutMs / 2));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool is shut down");
+        }
+
+        long start = System.nanoTime();
+        boolean leased;
+
+        waiters.incrementAndGet();
+        try {
+            leased = leases.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+
+        if (!leased) {
+            acquireTimeouts.increment();
+            throw new SQLTimeoutException("Timed out after " + acquireTimeoutMs +
+                    "ms waiting for a database connection");
+        }
+
+        try {
+            PooledConnection pooled = takeIdleOrCreate();
+            active.incrementAndGet();
+            acquireLatency.recordNanos(System.nanoTime() - start);
+            return lease(pooled);
+        } catch (SQLException | RuntimeException e) {
+            leases.release();
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("maxSize", maxSize);
+        metrics.put("total", total.get());
+        metrics.put("active", active.get());
+        metrics.put("idle", idle.size());
+        metrics.put("waiters", waiters.get());
+        metrics.put("created", created.sum());
+        metrics.put("destroyed", destroyed.sum());
+        metrics.put("acquireTimeouts", acquireTimeouts.sum());
+        metrics.put("validationFailures", validationFailures.sum());
+        metrics.put("acquireLatency", acquireLatency.toJson());
+        metrics.put("statementCache", statementStats.toJson());
+        return metrics;
+    }
+
+    private PooledConnection takeIdleOrCreate() throws SQLException {
+        while (true) {
+            PooledConnection pooled = idle.pollFirst();
+
+            if (pooled == null) {
+                pooled = create();
+                if (pooled != null) {
+                    return pooled;
+                }
+                // the housekeeper filled the last free slot, so an idle connection is available
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            if (pooled.isExpired(now, maxLifetimeMs)) {
+                destroy(pooled);
+                continue;
+            }
+
+            if (now - pooled.getLastReturnedAt() > validationIntervalMs &&
+                    !pooled.validate(validationQuery, validationTimeoutSeconds)) {
+                validationFailures.increment();
+                destroy(pooled);
+                continue;
+            }
+
+            return pooled;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        int current;
+        do {
+            current = total.get();
+            if (current >= maxSize) {
+                return null;
+            }
+        } while (!total.compareAndSet(current, current + 1));
+
+        try {
+            Connection physical = DriverManager.getConnection(url, username, password);
+            created.increment();
+            return new PooledConnection(physical, statementCacheSize, statementSqlLimit, statementStats);
+        } catch (SQLException | RuntimeException e) {
+            total.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        pooled.closePhysical();
+        total.decrementAndGet();
+        destroyed.increment();
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            active.decrementAndGet();
+            pooled.resetForReturn();
+
+            if (shutdown || pooled.isBroken() ||
+                    pooled.isExpired(System.currentTimeMillis(), maxLifetimeMs)) {
+                destroy(pooled);
+            } else {
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            leases.release();
+        }
+    }
+
+    private void housekeep() {
+        try {
+            long now = System.currentTimeMillis();
+
+            // walk from the tail, where the least recently used connections sit
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                boolean expired = pooled.isExpired(now, maxLifetimeMs);
+                boolean idleTooLong = idleTimeoutMs > 0 && idle.size() > minIdle &&
+                        now - pooled.getLastReturnedAt() > idleTimeoutMs;
+
+                if ((expired || idleTooLong) && idle.remove(pooled)) {
+                    destroy(pooled);
+                }
+            }
+
+            fillToMinIdle();
+        } catch (Exception e) {
+            System.err.println("Connection pool housekeeping failed: " + e.getMessage());
+        }
+    }
+
+    private void fillToMinIdle() throws SQLException {
+        while (!shutdown && idle.size() < minIdle) {
+            PooledConnection pooled = create();
+            if (pooled == null) {
+                return;
+            }
+            idle.offerLast(pooled);
+        }
+    }
+
+    private Connection lease(PooledConnection pooled) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new Lease(pooled));
+    }
+
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (closed.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed.get() || pooled.getPhysical().isClosed();
+                case "abort":
+                    pooled.markBroken();
+                    if (closed.compareAndSet(false, true)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.getPhysical() + "]";
+                case "prepareStatement":
+                    if (!closed.get() && StatementCache.isCacheable(method)) {
+                        int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                        try {
+                            return pooled.getStatementCache().prepare((Connection) proxy, (String) args[0],
+                                    autoGeneratedKeys);
+                        } catch (SQLException e) {
+                            if (PooledConnection.isConnectionFailure(e)) {
+                                pooled.markBroken();
+                            }
+                            throw e;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (closed.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            try {
+                return method.invoke(pooled.getPhysical(), args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (PooledConnection.isConnectionFailure(cause)) {
+                    pooled.markBroken();
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.chess.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.Statement;
+
+class PooledConnection {
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private final long createdAt;
+    private volatile long lastReturnedAt;
+    private volatile boolean broken;
+
+    PooledConnection(Connection physical, int statementCacheSize, int statementSqlLimit,
+                     StatementStats statementStats) {
+        this.physical = physical;
+        this.statementCache = new StatementCache(this, statementCacheSize, statementSqlLimit, statementStats);
+        this.createdAt = System.currentTimeMillis();
+        this.lastReturnedAt = createdAt;
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    long getLastReturnedAt() {
+        return lastReturnedAt;
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    void markBroken() {
+        broken = true;
+    }
+
+    boolean isExpired(long now, long maxLifetimeMs) {
+        return maxLifetimeMs > 0 && now - createdAt >= maxLifetimeMs;
+    }
+
+    boolean validate(String validationQuery, int timeoutSeconds) {
+        try {
+            if (validationQuery == null || validationQuery.isEmpty()) {
+                return physical.isValid(timeoutSeconds);
+            }
+
+            try (Statement stmt = physical.createStatement()) {
+                stmt.setQueryTimeout(timeoutSeconds);
+                stmt.execute(validationQuery);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void resetForReturn() {
+        try {
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+        } catch (SQLException e) {
+            broken = true;
+        }
+        lastReturnedAt = System.currentTimeMillis();
+    }
+
+    void closePhysical() {
+        statementCache.closeAll();
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            // already unusable, nothing else to release
+        }
+    }
+
+    static boolean isConnectionFailure(Throwable t) {
+        if (t instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        if (t instanceof SQLException) {
+            String state = ((SQLException) t).getSQLState();
+            return state != null && state.startsWith("08");
+        }
+        return false;
+    }
+}
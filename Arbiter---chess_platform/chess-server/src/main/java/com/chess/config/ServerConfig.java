@@ -0,0 +1,54 @@
+package com.chess.config;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+public class ServerConfig {
+    private static ServerConfig instance;
+    private final Properties props = new Properties();
+
+    private ServerConfig() {
+        loadConfig();
+    }
+
+    public static synchronized ServerConfig getInstance() {
+        if (instance == null) {
+            instance = new ServerConfig();
+        }
+        return instance;
+    }
+
+    private void loadConfig() {
+        try (FileInputStream fis = new FileInputStream("com/chess/config/server.properties")) {
+            props.load(fis);
+        } catch (IOException e) {
+            // every setting has a default at its call site
+        }
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = System.getProperty(key, props.getProperty(key));
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
@@ -0,0 +1,192 @@
+package com.chess.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+class StatementCache {
+    private final PooledConnection pooled;
+    private final int maxSize;
+    private final int maxSqlLength;
+    private final StatementStats stats;
+    private final LinkedHashMap<Key, CachedStatement> entries;
+
+    StatementCache(PooledConnection pooled, int maxSize, int maxSqlLength, StatementStats stats) {
+        this.pooled = pooled;
+        this.maxSize = maxSize;
+        this.maxSqlLength = maxSqlLength;
+        this.stats = stats;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                StatementCache.this.stats.recordEviction(eldest.getKey().sql);
+                return true;
+            }
+        };
+    }
+
+    static boolean isCacheable(Method method) {
+        Class<?>[] params = method.getParameterTypes();
+        return params.length == 1 && params[0] == String.class
+                || params.length == 2 && params[0] == String.class && params[1] == int.class;
+    }
+
+    PreparedStatement prepare(Connection owner, String sql, int autoGeneratedKeys) throws SQLException {
+        if (maxSize <= 0 || sql.length() > maxSqlLength) {
+            return pooled.getPhysical().prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        Key key = new Key(sql, autoGeneratedKeys);
+        CachedStatement cached = entries.get(key);
+
+        if (cached != null && !cached.inUse) {
+            stats.recordHit(sql);
+            return cached.checkout(owner);
+        }
+
+        stats.recordMiss(sql);
+        PreparedStatement stmt = pooled.getPhysical().prepareStatement(sql, autoGeneratedKeys);
+
+        if (cached != null) {
+            // the cached copy is still open further up the call stack; hand out a one-off statement
+            return stmt;
+        }
+
+        cached = new CachedStatement(pooled, stmt);
+        entries.put(key, cached);
+        return cached.checkout(owner);
+    }
+
+    void closeAll() {
+        List<CachedStatement> statements = new ArrayList<>(entries.values());
+        entries.clear();
+        for (CachedStatement cached : statements) {
+            cached.evict();
+        }
+    }
+
+    private static final class Key {
+        private final String sql;
+        private final int autoGeneratedKeys;
+
+        Key(String sql, int autoGeneratedKeys) {
+            this.sql = sql;
+            this.autoGeneratedKeys = autoGeneratedKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return autoGeneratedKeys == other.autoGeneratedKeys && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sql, autoGeneratedKeys);
+        }
+    }
+
+    private static final class CachedStatement {
+        private final PooledConnection pooled;
+        private final PreparedStatement physical;
+        private boolean inUse;
+        private boolean evicted;
+
+        CachedStatement(PooledConnection pooled, PreparedStatement physical) {
+            this.pooled = pooled;
+            this.physical = physical;
+        }
+
+        PreparedStatement checkout(Connection owner) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Handle(this, owner));
+        }
+
+        void checkin() throws SQLException {
+            inUse = false;
+            if (evicted) {
+                physical.close();
+                return;
+            }
+            physical.clearParameters();
+            physical.clearBatch();
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException e) {
+                    // the connection is going away or the statement is already dead
+                }
+            }
+        }
+    }
+
+    private static final class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private boolean closed;
+
+        Handle(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        cached.checkin();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+
+            try {
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (PooledConnection.isConnectionFailure(cause)) {
+                    cached.pooled.markBroken();
+                }
+                throw cause;
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.chess.config;
+
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+class StatementStats {
+    private final Map<String, Counters> bySql = new ConcurrentHashMap<>();
+
+    void recordHit(String sql) {
+        counters(sql).hits.increment();
+    }
+
+    void recordMiss(String sql) {
+        counters(sql).misses.increment();
+    }
+
+    void recordEviction(String sql) {
+        counters(sql).evictions.increment();
+    }
+
+    JSONObject toJson() {
+        long hits = 0;
+        long misses = 0;
+        JSONObject statements = new JSONObject();
+
+        for (Map.Entry<String, Counters> entry : bySql.entrySet()) {
+            Counters counters = entry.getValue();
+            long statementHits = counters.hits.sum();
+            long statementMisses = counters.misses.sum();
+            hits += statementHits;
+            misses += statementMisses;
+
+            statements.put(entry.getKey(), new JSONObject()
+                    .put("hits", statementHits)
+                    .put("misses", statementMisses)
+                    .put("evictions", counters.evictions.sum()));
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        json.put("statements", statements);
+        return json;
+    }
+
+    private Counters counters(String sql) {
+        return bySql.computeIfAbsent(sql, k -> new Counters());
+    }
+
+    private static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+    }
+}
@@ -0,0 +1,162 @@
+package com.chess.dao;
+
+import com.chess.config.DatabaseConfig;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+public class GameCodeDAO {
+    private static final String SEQUENCE_NAME = "game_code";
+
+    // LAST_INSERT_ID(expr) hands the new value back on this connection only, so concurrent servers never see each other's blocks
+    private static final String RESERVE_SQL =
+            "UPDATE game_code_sequence SET next_value = LAST_INSERT_ID(next_value + ?) WHERE name = ?";
+    private static final String INIT_SEQUENCE_SQL =
+            "INSERT IGNORE INTO game_code_sequence (name, next_value) VALUES (?, 0)";
+    private static final String CLAIM_RECYCLED_SQL =
+            "SELECT game_code FROM recycled_game_codes ORDER BY recycled_at LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_RECYCLED_SQL = "DELETE FROM recycled_game_codes WHERE game_code = ?";
+    private static final String RECYCLE_SQL = "INSERT IGNORE INTO recycled_game_codes (game_code) VALUES (?)";
+    private static final String FIND_ARCHIVABLE_SQL =
+            "SELECT game_id, game_code FROM games WHERE status IN ('FINISHED', 'ABANDONED') " +
+            "AND game_code IS NOT NULL AND COALESCE(last_move_at, created_at) < ? " +
+            "LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String RELEASE_GAME_CODE_SQL = "UPDATE games SET game_code = NULL WHERE game_id = ?";
+
+    private final DatabaseConfig dbConfig;
+
+    public GameCodeDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    // Reserves blockSize consecutive sequence values and returns the first one.
+    public long reserveSequenceBlock(int blockSize) throws SQLException {
+        try (Connection conn = dbConfig.getConnection()) {
+            if (!advanceSequence(conn, blockSize)) {
+                try (PreparedStatement init = conn.prepareStatement(INIT_SEQUENCE_SQL)) {
+                    init.setString(1, SEQUENCE_NAME);
+                    init.executeUpdate();
+                }
+                if (!advanceSequence(conn, blockSize)) {
+                    throw new SQLException("Game code sequence could not be initialised");
+                }
+            }
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                if (!rs.next()) {
+                    throw new SQLException("Reserving game codes failed, no sequence value returned.");
+                }
+                return rs.getLong(1) - blockSize;
+            }
+        }
+    }
+
+    private boolean advanceSequence(Connection conn, int blockSize) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(RESERVE_SQL)) {
+            stmt.setInt(1, blockSize);
+            stmt.setString(2, SEQUENCE_NAME);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    // Takes up to max codes out of the recycle pool; rows locked by another server are skipped, not waited on.
+    public List<String> claimRecycledCodes(int max) throws SQLException {
+        List<String> codes = new ArrayList<>();
+
+        try (Connection conn = dbConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement(CLAIM_RECYCLED_SQL)) {
+                    stmt.setInt(1, max);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            codes.add(rs.getString("game_code"));
+                        }
+                    }
+                }
+
+                if (!codes.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(DELETE_RECYCLED_SQL)) {
+                        for (String code : codes) {
+                            stmt.setString(1, code);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        return codes;
+    }
+
+    public void recycleCodes(Collection<String> codes) throws SQLException {
+        if (codes.isEmpty()) {
+            return;
+        }
+
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RECYCLE_SQL)) {
+            for (String code : codes) {
+                stmt.setString(1, code);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // Detaches the codes of long-finished games and hands them to the recycle pool. Returns how many were freed.
+    public int archiveFinishedGames(Timestamp finishedBefore, int limit) throws SQLException {
+        try (Connection conn = dbConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                List<Integer> gameIds = new ArrayList<>();
+                List<String> codes = new ArrayList<>();
+
+                try (PreparedStatement stmt = conn.prepareStatement(FIND_ARCHIVABLE_SQL)) {
+                    stmt.setTimestamp(1, finishedBefore);
+                    stmt.setInt(2, limit);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            gameIds.add(rs.getInt("game_id"));
+                            codes.add(rs.getString("game_code"));
+                        }
+                    }
+                }
+
+                if (!gameIds.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(RELEASE_GAME_CODE_SQL)) {
+                        for (int gameId : gameIds) {
+                            stmt.setInt(1, gameId);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(RECYCLE_SQL)) {
+                        for (String code : codes) {
+                            stmt.setString(1, code);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+
+                conn.commit();
+                return gameIds.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.chess.dao;
 
 import com.chess.config.DatabaseConfig;
 import com.chess.models.Game;
+import com.chess.models.WaitingGame;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public class GameDAO {
@@ -15,7 +17,8 @@ public class GameDAO {
 
     public Game createGame(Game game) throws SQLException {
         String sql = "INSERT INTO games (game_code, white_player_id, black_player_id, fen_position, " +
-                "status, turn) VALUES (?, ?, ?, ?, ?, ?)";
+                "status, turn, last_move_at, time_base_ms, time_increment_ms, white_time_ms, black_time_ms) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
         try (Connection conn = dbConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -26,6 +29,12 @@ public class GameDAO {
             stmt.setString(4, game.getFenPosition());
             stmt.setString(5, game.getStatus().toString());
             stmt.setString(6, game.getTurn());
+            stmt.setTimestamp(7, game.getLastMoveAt() != null ?
+                    Timestamp.valueOf(game.getLastMoveAt()) : null);
+            stmt.setLong(8, game.getTimeBaseMs());
+            stmt.setLong(9, game.getTimeIncrementMs());
+            stmt.setLong(10, game.getWhiteTimeMs());
+            stmt.setLong(11, game.getBlackTimeMs());
 
             int affectedRows = stmt.executeUpdate();
 
@@ -40,8 +49,6 @@ public class GameDAO {
             }
 
             return game;
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
@@ -64,8 +71,6 @@ public class GameDAO {
             }
 
             return null;
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
     public List<Game> findByUser(int userId) throws SQLException {
@@ -87,64 +92,98 @@ public class GameDAO {
     }
 
 
-    public void updateGame(Game game) throws SQLException {
-        String sql = "UPDATE games SET black_player_id = ?, fen_position = ?, status = ?, " +
-                "result = ?, turn = ?, last_move_at = ? WHERE game_id = ?";
+    private static final String UPDATE_GAME_SQL = "UPDATE games SET black_player_id = ?, fen_position = ?, " +
+            "status = ?, result = ?, turn = ?, last_move_at = ?, white_time_ms = ?, black_time_ms = ? " +
+            "WHERE game_id = ?";
 
+    public void updateGame(Game game) throws SQLException {
         try (Connection conn = dbConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setObject(1, game.getBlackPlayerId() > 0 ? game.getBlackPlayerId() : null);
-            stmt.setString(2, game.getFenPosition());
-            stmt.setString(3, game.getStatus().toString());
-            stmt.setObject(4, game.getResult() != null ? game.getResult().toString() : null);
-            stmt.setString(5, game.getTurn());
-            stmt.setTimestamp(6, game.getLastMoveAt() != null ?
-                    Timestamp.valueOf(game.getLastMoveAt()) : null);
-            stmt.setInt(7, game.getGameId());
+             PreparedStatement stmt = conn.prepareStatement(UPDATE_GAME_SQL)) {
 
+            bindGameUpdate(stmt, game);
             stmt.executeUpdate();
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
-    public boolean gameCodeExists(String gameCode) throws SQLException {
-        String sql = "SELECT 1 FROM games WHERE game_code = ?";
-
-        try (Connection conn = dbConfig.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setString(1, gameCode);
+    public void updateGames(Connection conn, Collection<Game> games) throws SQLException {
+        if (games.isEmpty()) {
+            return;
+        }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                return rs.next();
+        try (PreparedStatement stmt = conn.prepareStatement(UPDATE_GAME_SQL)) {
+            for (Game game : games) {
+                bindGameUpdate(stmt, game);
+                stmt.addBatch();
             }
-        } finally {
-            dbConfig.releaseConnection(null);
+            stmt.executeBatch();
         }
     }
 
-    public List<Game> findWaitingGames() throws SQLException {
-        String sql = "SELECT g.*, u1.username as white_username " +
+    private void bindGameUpdate(PreparedStatement stmt, Game game) throws SQLException {
+        stmt.setObject(1, game.getBlackPlayerId() > 0 ? game.getBlackPlayerId() : null);
+        stmt.setString(2, game.getFenPosition());
+        stmt.setString(3, game.getStatus().toString());
+        stmt.setObject(4, game.getResult() != null ? game.getResult().toString() : null);
+        stmt.setString(5, game.getTurn());
+        stmt.setTimestamp(6, game.getLastMoveAt() != null ?
+                Timestamp.valueOf(game.getLastMoveAt()) : null);
+        stmt.setLong(7, game.getWhiteTimeMs());
+        stmt.setLong(8, game.getBlackTimeMs());
+        stmt.setInt(9, game.getGameId());
+    }
+
+    public List<WaitingGame> findWaitingGames() throws SQLException {
+        String sql = "SELECT g.game_code, g.white_player_id, g.created_at, " +
+                "u1.username as white_username, u1.rating as white_rating " +
                 "FROM games g " +
                 "JOIN users u1 ON g.white_player_id = u1.user_id " +
-                "WHERE g.status = 'WAITING' AND g.black_player_id IS NULL " +
-                "ORDER BY g.created_at DESC";
+                "WHERE g.status = 'WAITING' AND g.black_player_id IS NULL AND g.game_code IS NOT NULL " +
+                "ORDER BY g.created_at";
 
-        List<Game> games = new ArrayList<>();
+        List<WaitingGame> games = new ArrayList<>();
 
         try (Connection conn = dbConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
-                games.add(mapResultSetToGame(rs));
+                games.add(new WaitingGame(rs.getString("game_code"), rs.getInt("white_player_id"),
+                        rs.getString("white_username"), rs.getInt("white_rating"),
+                        rs.getTimestamp("created_at").getTime()));
             }
 
             return games;
-        } finally {
-            dbConfig.releaseConnection(null);
+        }
+    }
+
+    public List<String> findActiveTimedGameCodes() throws SQLException {
+        String sql = "SELECT game_code FROM games " +
+                "WHERE status = 'ACTIVE' AND time_base_ms > 0 AND game_code IS NOT NULL";
+
+        List<String> codes = new ArrayList<>();
+
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                codes.add(rs.getString("game_code"));
+            }
+
+            return codes;
+        }
+    }
+
+    // Marks a game that never found an opponent as abandoned; false if someone joined it first.
+    public boolean abandonWaitingGame(String gameCode) throws SQLException {
+        String sql = "UPDATE games SET status = 'ABANDONED', result = 'ABANDONED' " +
+                "WHERE game_code = ? AND status = 'WAITING'";
+
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setString(1, gameCode);
+            return stmt.executeUpdate() > 0;
         }
     }
 
@@ -170,6 +209,11 @@ public class GameDAO {
             game.setLastMoveAt(lastMove.toLocalDateTime());
         }
 
+        game.setTimeBaseMs(rs.getLong("time_base_ms"));
+        game.setTimeIncrementMs(rs.getLong("time_increment_ms"));
+        game.setWhiteTimeMs(rs.getLong("white_time_ms"));
+        game.setBlackTimeMs(rs.getLong("black_time_ms"));
+
         try {
             game.setWhitePlayerName(rs.getString("white_username"));
             game.setBlackPlayerName(rs.getString("black_username"));
@@ -13,29 +13,60 @@ public class MoveDAO {
         this.dbConfig = DatabaseConfig.getInstance();
     }
 
+    private static final int MAX_ROWS_PER_INSERT = 64;
+    private static final String INSERT_PREFIX = "INSERT INTO moves (game_id, move_number, from_square, to_square, " +
+            "piece, captured_piece, promotion, san_notation) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?)";
+
     public void saveMove(Move move) throws SQLException {
-        String sql = "INSERT INTO moves (game_id, move_number, from_square, to_square, " +
-                "piece, captured_piece, promotion, san_notation) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String sql = INSERT_PREFIX + INSERT_ROW;
 
         try (Connection conn = dbConfig.getConnection();
             PreparedStatement stmt = conn.prepareStatement(sql)) {
 
-            stmt.setInt(1, move.getGameId());
-            stmt.setInt(2, move.getMoveNumber());
-            stmt.setString(3, move.getFromSquare());
-            stmt.setString(4, move.getToSquare());
-            stmt.setString(5, move.getPiece());
-            stmt.setObject(6, move.getCapturedPiece());
-            stmt.setObject(7, move.getPromotion());
-            stmt.setString(8, move.getSanNotation());
-
+            bindMove(stmt, 1, move);
             stmt.executeUpdate();
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
+    public void saveMoves(Connection conn, List<Move> moves) throws SQLException {
+        for (int start = 0; start < moves.size(); start += MAX_ROWS_PER_INSERT) {
+            int end = Math.min(moves.size(), start + MAX_ROWS_PER_INSERT);
+
+            try (PreparedStatement stmt = conn.prepareStatement(multiRowInsertSql(end - start))) {
+                int index = 1;
+                for (Move move : moves.subList(start, end)) {
+                    index = bindMove(stmt, index, move);
+                }
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    private String multiRowInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (INSERT_ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+        }
+        return sql.toString();
+    }
+
+    private int bindMove(PreparedStatement stmt, int index, Move move) throws SQLException {
+        stmt.setInt(index++, move.getGameId());
+        stmt.setInt(index++, move.getMoveNumber());
+        stmt.setString(index++, move.getFromSquare());
+        stmt.setString(index++, move.getToSquare());
+        stmt.setString(index++, move.getPiece());
+        stmt.setObject(index++, move.getCapturedPiece());
+        stmt.setObject(index++, move.getPromotion());
+        stmt.setString(index++, move.getSanNotation());
+        return index;
+    }
+
     public List<Move> getMovesByGameId(int gameId) throws SQLException {
         String sql = "SELECT * FROM moves WHERE game_id = ? ORDER BY move_number";
         List<Move> moves = new ArrayList<>();
@@ -52,8 +83,6 @@ public class MoveDAO {
             }
 
             return moves;
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
@@ -72,8 +101,6 @@ public class MoveDAO {
             }
 
             return 1;
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
@@ -0,0 +1,287 @@
+package com.chess.dao;
+
+import com.chess.config.DatabaseConfig;
+import com.chess.models.Game;
+import com.chess.models.Rating;
+import com.chess.models.RatingPeriod;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RatingDAO {
+    private static final String PERIOD_LOCK = "chess_rating_period";
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    private static final String SELECT_RATINGS_SQL =
+            "SELECT user_id, rating, rating_deviation, rating_volatility FROM users WHERE user_id IN (%s)";
+    private static final String UPDATE_RATING_SQL =
+            "UPDATE users SET rating = ?, rating_deviation = ?, rating_volatility = ? WHERE user_id = ?";
+    // a resumed period recomputes from the same snapshot, so rewriting a player it already wrote is harmless
+    private static final String UPDATE_PERIOD_RATING_SQL =
+            "UPDATE users SET rating = ?, rating_deviation = ?, rating_volatility = ?, rating_period = ? " +
+            "WHERE user_id = ?";
+    // INSERT IGNORE keeps the rows of an interrupted run, which were taken before any rating was written
+    private static final String SNAPSHOT_RATINGS_SQL =
+            "INSERT IGNORE INTO rating_period_snapshots (period_id, user_id, rating, rating_deviation, rating_volatility) " +
+            "SELECT ?, user_id, rating, rating_deviation, rating_volatility FROM users WHERE user_id IN (%s)";
+    private static final String SELECT_SNAPSHOT_SQL =
+            "SELECT user_id, rating, rating_deviation, rating_volatility FROM rating_period_snapshots " +
+            "WHERE period_id = ? AND user_id IN (%s)";
+    private static final String DELETE_SNAPSHOTS_SQL = "DELETE FROM rating_period_snapshots WHERE period_id <= ?";
+    private static final String GROW_IDLE_DEVIATION_SQL =
+            "UPDATE users SET rating_deviation = LEAST(?, SQRT(POW(rating_deviation, 2) + " +
+            "POW(rating_volatility * ?, 2))), rating_period = ? " +
+            "WHERE user_id >= ? AND user_id < ? AND rating_period < ?";
+    private static final String MAX_USER_ID_SQL = "SELECT COALESCE(MAX(user_id), 0) FROM users";
+    private static final String FIND_RESULTS_SQL =
+            "SELECT white_player_id, black_player_id, result FROM games WHERE status = 'FINISHED' " +
+            "AND result IN ('WHITE_WIN', 'BLACK_WIN', 'DRAW') " +
+            "AND white_player_id IS NOT NULL AND black_player_id IS NOT NULL " +
+            "AND last_move_at >= ? AND last_move_at < ?";
+    private static final String LATEST_PERIOD_SQL =
+            "SELECT period_id, started_at, ended_at, completed_at FROM rating_periods " +
+            "ORDER BY period_id DESC LIMIT 1";
+    private static final String INSERT_PERIOD_SQL =
+            "INSERT INTO rating_periods (started_at, ended_at) VALUES (?, ?)";
+    private static final String COMPLETE_PERIOD_SQL =
+            "UPDATE rating_periods SET completed_at = CURRENT_TIMESTAMP WHERE period_id = ?";
+
+    private final DatabaseConfig dbConfig;
+
+    public RatingDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    // Locks the players' rows until the caller's transaction ends. The IN list is walked in primary key
+    // order, so two transactions locking overlapping players always queue instead of deadlocking.
+    public Map<Integer, Rating> lockRatings(Connection conn, Collection<Integer> userIds) throws SQLException {
+        Map<Integer, Rating> ratings = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            readRatings(conn, new ArrayList<>(userIds), " ORDER BY user_id FOR UPDATE", ratings);
+        }
+        return ratings;
+    }
+
+    // Records the players' pre-period ratings. Must finish before any of the period's ratings are written;
+    // running it again for a resumed period only fills in rows the interrupted run never got to.
+    public void snapshotPeriod(int periodId, Collection<Integer> userIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(userIds);
+
+        try (Connection conn = dbConfig.getConnection()) {
+            for (int from = 0; from < ids.size(); from += LOAD_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + LOAD_CHUNK_SIZE, ids.size()));
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        String.format(SNAPSHOT_RATINGS_SQL, placeholders(chunk.size())))) {
+                    stmt.setInt(1, periodId);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setInt(i + 2, chunk.get(i));
+                    }
+                    stmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    public Map<Integer, Rating> loadPeriodSnapshot(int periodId, Collection<Integer> userIds) throws SQLException {
+        Map<Integer, Rating> ratings = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(userIds);
+
+        try (Connection conn = dbConfig.getConnection()) {
+            for (int from = 0; from < ids.size(); from += LOAD_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + LOAD_CHUNK_SIZE, ids.size()));
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        String.format(SELECT_SNAPSHOT_SQL, placeholders(chunk.size())))) {
+                    stmt.setInt(1, periodId);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setInt(i + 2, chunk.get(i));
+                    }
+                    readRatings(stmt, ratings);
+                }
+            }
+        }
+        return ratings;
+    }
+
+    public void deletePeriodSnapshots(int throughPeriodId) throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(DELETE_SNAPSHOTS_SQL)) {
+            stmt.setInt(1, throughPeriodId);
+            stmt.executeUpdate();
+        }
+    }
+
+    private void readRatings(Connection conn, List<Integer> ids, String suffix, Map<Integer, Rating> into)
+            throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                String.format(SELECT_RATINGS_SQL, placeholders(ids.size())) + suffix)) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setInt(i + 1, ids.get(i));
+            }
+            readRatings(stmt, into);
+        }
+    }
+
+    private void readRatings(PreparedStatement stmt, Map<Integer, Rating> into) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                into.put(rs.getInt("user_id"), new Rating(rs.getInt("rating"),
+                        rs.getDouble("rating_deviation"), rs.getDouble("rating_volatility")));
+            }
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    public void saveRatings(Connection conn, Map<Integer, Rating> ratings) throws SQLException {
+        if (ratings.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(UPDATE_RATING_SQL)) {
+            for (Map.Entry<Integer, Rating> entry : ratings.entrySet()) {
+                stmt.setLong(1, Math.round(entry.getValue().getRating()));
+                stmt.setDouble(2, entry.getValue().getDeviation());
+                stmt.setDouble(3, entry.getValue().getVolatility());
+                stmt.setInt(4, entry.getKey());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    // Writes one chunk of a period's results in its own short transaction.
+    public void savePeriodRatings(int periodId, Map<Integer, Rating> ratings) throws SQLException {
+        try (Connection conn = dbConfig.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_PERIOD_RATING_SQL)) {
+                for (Map.Entry<Integer, Rating> entry : ratings.entrySet()) {
+                    stmt.setLong(1, Math.round(entry.getValue().getRating()));
+                    stmt.setDouble(2, entry.getValue().getDeviation());
+                    stmt.setDouble(3, entry.getValue().getVolatility());
+                    stmt.setInt(4, periodId);
+                    stmt.setInt(5, entry.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Widens the deviation of every player in [fromUserId, toUserId) not yet touched by this period.
+    public int growIdleDeviation(int periodId, int fromUserId, int toUserId, double maxDeviation, double scale)
+            throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(GROW_IDLE_DEVIATION_SQL)) {
+            stmt.setDouble(1, maxDeviation);
+            stmt.setDouble(2, scale);
+            stmt.setInt(3, periodId);
+            stmt.setInt(4, fromUserId);
+            stmt.setInt(5, toUserId);
+            stmt.setInt(6, periodId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    public int findMaxUserId() throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(MAX_USER_ID_SQL)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Finished, decided games in [from, to). Only the players and result are filled in.
+    public List<Game> findResults(Timestamp from, Timestamp to) throws SQLException {
+        List<Game> games = new ArrayList<>();
+
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_RESULTS_SQL)) {
+            stmt.setTimestamp(1, from);
+            stmt.setTimestamp(2, to);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Game game = new Game();
+                    game.setWhitePlayerId(rs.getInt("white_player_id"));
+                    game.setBlackPlayerId(rs.getInt("black_player_id"));
+                    game.setResult(Game.GameResult.valueOf(rs.getString("result")));
+                    games.add(game);
+                }
+            }
+        }
+        return games;
+    }
+
+    public RatingPeriod findLatestPeriod() throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LATEST_PERIOD_SQL)) {
+            if (!rs.next()) {
+                return null;
+            }
+            return new RatingPeriod(rs.getInt("period_id"), rs.getTimestamp("started_at"),
+                    rs.getTimestamp("ended_at"), rs.getTimestamp("completed_at") != null);
+        }
+    }
+
+    public RatingPeriod createPeriod(Timestamp startedAt, Timestamp endedAt) throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(INSERT_PERIOD_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setTimestamp(1, startedAt);
+            stmt.setTimestamp(2, endedAt);
+            stmt.executeUpdate();
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("Creating rating period failed, no ID obtained.");
+                }
+                return new RatingPeriod(keys.getInt(1), startedAt, endedAt, false);
+            }
+        }
+    }
+
+    public void completePeriod(int periodId) throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(COMPLETE_PERIOD_SQL)) {
+            stmt.setInt(1, periodId);
+            stmt.executeUpdate();
+        }
+    }
+
+    // Takes the server-wide period lock on a connection of its own; returns null if another server
+    // holds it. The lock lives as long as the connection, so a crashed run never leaves it stuck.
+    public Connection acquirePeriodLock() throws SQLException {
+        Connection conn = dbConfig.getConnection();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            stmt.setString(1, PERIOD_LOCK);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next() && rs.getInt(1) == 1) {
+                    return conn;
+                }
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        conn.close();
+        return null;
+    }
+
+    public void releasePeriodLock(Connection conn) throws SQLException {
+        try (conn; PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, PERIOD_LOCK);
+            stmt.executeQuery().close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.chess.dao;
+
+import com.chess.config.DatabaseConfig;
+import java.sql.*;
+import java.util.Map;
+
+public class RevokedTokenDAO {
+    private static final String REVOKE_SQL =
+            "INSERT IGNORE INTO revoked_tokens (token_id, expires_at) VALUES (?, ?)";
+    private static final String FIND_SINCE_SQL =
+            "SELECT revocation_id, token_id, expires_at FROM revoked_tokens " +
+            "WHERE revocation_id > ? AND expires_at > ? ORDER BY revocation_id";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM revoked_tokens WHERE expires_at <= ? LIMIT ?";
+
+    private final DatabaseConfig dbConfig;
+
+    public RevokedTokenDAO() {
+        this.dbConfig = DatabaseConfig.getInstance();
+    }
+
+    public void revoke(String tokenId, long expiresAt) throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(REVOKE_SQL)) {
+            stmt.setString(1, tokenId);
+            stmt.setTimestamp(2, new Timestamp(expiresAt));
+            stmt.executeUpdate();
+        }
+    }
+
+    // Adds unexpired revocations newer than afterId to into, keyed by token id with the expiry in millis.
+    // Returns the highest revocation id seen, or afterId if there were none. Ids are taken at insert but
+    // become visible at commit, so callers should start each poll a little behind the last id returned.
+    public long findSince(long afterId, Map<String, Long> into) throws SQLException {
+        long lastId = afterId;
+
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(FIND_SINCE_SQL)) {
+            stmt.setLong(1, afterId);
+            stmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    lastId = rs.getLong("revocation_id");
+                    into.put(rs.getString("token_id"), rs.getTimestamp("expires_at").getTime());
+                }
+            }
+        }
+        return lastId;
+    }
+
+    public int deleteExpired(long before, int limit) throws SQLException {
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(DELETE_EXPIRED_SQL)) {
+            stmt.setTimestamp(1, new Timestamp(before));
+            stmt.setInt(2, limit);
+            return stmt.executeUpdate();
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.chess.dao;
 import com.chess.config.DatabaseConfig;
 import com.chess.models.User;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class UserDAO {
     private final DatabaseConfig dbConfig;
@@ -40,8 +43,6 @@ public class UserDAO {
             }
 
             return user;
-        } finally {
-            dbConfig.releaseConnection(null); // Connection already closed by try-with-resources
         }
     }
 
@@ -60,8 +61,6 @@ public class UserDAO {
             }
 
             return null;
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
@@ -80,34 +79,80 @@ public class UserDAO {
             }
 
             return null;
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
+    // Just enough of every user to rank them: id, name and rating.
+    public List<User> findAllRanked() throws SQLException {
+        String sql = "SELECT user_id, username, rating FROM users";
+        List<User> users = new ArrayList<>();
+
+        try (Connection conn = dbConfig.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                User user = new User();
+                user.setUserId(rs.getInt("user_id"));
+                user.setUsername(rs.getString("username"));
+                user.setRating(rs.getInt("rating"));
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
     public void updateStats(int userId, String result) throws SQLException {
-        String sql;
+        String sql = statsSql(result);
+        if (sql == null) {
+            return;
+        }
+
+        try (Connection conn = dbConfig.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setInt(1, userId);
+            stmt.executeUpdate();
+        }
+    }
+
+    public void updateStats(Connection conn, Map<String, List<Integer>> userIdsByResult) throws SQLException {
+        for (Map.Entry<String, List<Integer>> entry : userIdsByResult.entrySet()) {
+            String sql = statsSql(entry.getKey());
+            if (sql == null || entry.getValue().isEmpty()) {
+                continue;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int userId : entry.getValue()) {
+                    stmt.setInt(1, userId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+    }
+
+    private String statsSql(String result) {
         switch (result.toUpperCase()) {
             case "WIN":
-                sql = "UPDATE users SET wins = wins + 1, rating = rating + 10 WHERE user_id = ?";
-                break;
+                return "UPDATE users SET wins = wins + 1 WHERE user_id = ?";
             case "LOSS":
-                sql = "UPDATE users SET losses = losses + 1, rating = rating - 10 WHERE user_id = ?";
-                break;
+                return "UPDATE users SET losses = losses + 1 WHERE user_id = ?";
             case "DRAW":
-                sql = "UPDATE users SET draws = draws + 1 WHERE user_id = ?";
-                break;
+                return "UPDATE users SET draws = draws + 1 WHERE user_id = ?";
             default:
-                return;
+                return null;
         }
+    }
+
+    public void updatePasswordHash(int userId, String passwordHash) throws SQLException {
+        String sql = "UPDATE users SET password_hash = ? WHERE user_id = ?";
 
         try (Connection conn = dbConfig.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setInt(1, userId);
+            stmt.setString(1, passwordHash);
+            stmt.setInt(2, userId);
             stmt.executeUpdate();
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
@@ -122,8 +167,6 @@ public class UserDAO {
             try (ResultSet rs = stmt.executeQuery()) {
                 return rs.next();
             }
-        } finally {
-            dbConfig.releaseConnection(null);
         }
     }
 
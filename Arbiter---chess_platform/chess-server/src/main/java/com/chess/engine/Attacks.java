@@ -0,0 +1,76 @@
+package com.chess.engine;
+
+final class Attacks {
+    static final long[] KNIGHT = new long[64];
+    static final long[] KING = new long[64];
+    // PAWN[color][sq] holds the squares a pawn of that color on sq attacks
+    static final long[][] PAWN = new long[2][64];
+
+    // N, NE, E, NW step to higher square numbers; SE, S, SW, W step to lower ones
+    private static final int N = 0, NE = 1, E = 2, NW = 3, SE = 4, S = 5, SW = 6, W = 7;
+    private static final int[] FILE_STEP = {0, 1, 1, -1, 1, 0, -1, -1};
+    private static final int[] RANK_STEP = {1, 1, 0, 1, -1, -1, -1, 0};
+    private static final long[][] RAYS = new long[8][64];
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+
+        for (int sq = 0; sq < 64; sq++) {
+            int file = Squares.file(sq);
+            int rank = Squares.rank(sq);
+
+            for (int[] step : knightSteps) {
+                KNIGHT[sq] |= bit(file + step[0], rank + step[1]);
+            }
+
+            for (int df = -1; df <= 1; df++) {
+                for (int dr = -1; dr <= 1; dr++) {
+                    if (df != 0 || dr != 0) {
+                        KING[sq] |= bit(file + df, rank + dr);
+                    }
+                }
+            }
+
+            PAWN[Pieces.WHITE][sq] = bit(file - 1, rank + 1) | bit(file + 1, rank + 1);
+            PAWN[Pieces.BLACK][sq] = bit(file - 1, rank - 1) | bit(file + 1, rank - 1);
+
+            for (int dir = 0; dir < 8; dir++) {
+                int f = file + FILE_STEP[dir];
+                int r = rank + RANK_STEP[dir];
+                while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                    RAYS[dir][sq] |= 1L << Squares.of(f, r);
+                    f += FILE_STEP[dir];
+                    r += RANK_STEP[dir];
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    static long bishop(int sq, long occupied) {
+        return ray(NE, sq, occupied) | ray(NW, sq, occupied) | ray(SE, sq, occupied) | ray(SW, sq, occupied);
+    }
+
+    static long rook(int sq, long occupied) {
+        return ray(N, sq, occupied) | ray(E, sq, occupied) | ray(S, sq, occupied) | ray(W, sq, occupied);
+    }
+
+    private static long ray(int dir, int sq, long occupied) {
+        long attacks = RAYS[dir][sq];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            int first = dir < SE ? Long.numberOfTrailingZeros(blockers) : 63 - Long.numberOfLeadingZeros(blockers);
+            attacks ^= RAYS[dir][first];
+        }
+        return attacks;
+    }
+
+    private static long bit(int file, int rank) {
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return 0L;
+        }
+        return 1L << Squares.of(file, rank);
+    }
+}
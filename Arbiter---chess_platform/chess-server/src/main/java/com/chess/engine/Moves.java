@@ -0,0 +1,43 @@
+package com.chess.engine;
+
+// Moves are packed into an int: bits 0-5 from, 6-11 to, 12-14 flag, 15-17 promotion piece type.
+public final class Moves {
+    public static final int NONE = 0;
+
+    public static final int FLAG_NORMAL = 0;
+    public static final int FLAG_DOUBLE_PUSH = 1;
+    public static final int FLAG_EN_PASSANT = 2;
+    public static final int FLAG_CASTLE = 3;
+    public static final int FLAG_PROMOTION = 4;
+
+    private Moves() {
+    }
+
+    static int encode(int from, int to, int flag, int promotionType) {
+        return from | (to << 6) | (flag << 12) | (promotionType << 15);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flag(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static int promotionType(int move) {
+        return (move >>> 15) & 7;
+    }
+
+    public static String toUci(int move) {
+        String uci = Squares.name(from(move)) + Squares.name(to(move));
+        if (flag(move) == FLAG_PROMOTION) {
+            uci += Pieces.typeSymbol(promotionType(move));
+        }
+        return uci;
+    }
+}
@@ -0,0 +1,55 @@
+package com.chess.engine;
+
+// A piece index is color * 6 + type; EMPTY marks a vacant square.
+public final class Pieces {
+    public static final int EMPTY = -1;
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    private static final String FEN_SYMBOLS = "PNBRQKpnbrqk";
+
+    private Pieces() {
+    }
+
+    public static int of(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int color(int piece) {
+        return piece / 6;
+    }
+
+    public static int type(int piece) {
+        return piece % 6;
+    }
+
+    public static char fenSymbol(int piece) {
+        return FEN_SYMBOLS.charAt(piece);
+    }
+
+    public static int fromFenSymbol(char symbol) {
+        int piece = FEN_SYMBOLS.indexOf(symbol);
+        if (piece < 0) {
+            throw new IllegalArgumentException("Unknown piece symbol: " + symbol);
+        }
+        return piece;
+    }
+
+    // lower-case type letter as used in UCI promotions and the moves table
+    public static char typeSymbol(int type) {
+        return FEN_SYMBOLS.charAt(6 + type);
+    }
+
+    public static int typeFromSymbol(char symbol) {
+        int index = FEN_SYMBOLS.indexOf(Character.toLowerCase(symbol), 6);
+        return index < 0 ? -1 : index - 6;
+    }
+}
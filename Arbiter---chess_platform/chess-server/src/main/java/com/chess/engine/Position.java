@@ -0,0 +1,721 @@
+package com.chess.engine;
+
+import java.util.Arrays;
+
+public class Position {
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    static final int MAX_MOVES = 256;
+
+    private static final int WHITE_KINGSIDE = 1;
+    private static final int WHITE_QUEENSIDE = 2;
+    private static final int BLACK_KINGSIDE = 4;
+    private static final int BLACK_QUEENSIDE = 8;
+
+    private static final long RANK_1 = 0xFFL;
+    private static final long RANK_3 = 0xFFL << 16;
+    private static final long RANK_6 = 0xFFL << 40;
+    private static final long RANK_8 = 0xFFL << 56;
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final long FILE_H = FILE_A << 7;
+
+    // castling rights that survive a move touching the square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] occupancy = new long[2];
+    private long occupied;
+    private final int[] board = new int[64];
+
+    private int sideToMove;
+    private int castling;
+    private int epSquare = Squares.NONE;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private long hash;
+
+    // hashes of every position since the last capture or pawn move, current position last
+    private long[] history = new long[32];
+    private int historyLength;
+    private int repetitions;
+
+    // undo stack for make/unmake, indexed by ply
+    private int ply;
+    private int[] undoMove = new int[16];
+    private int[] undoCaptured = new int[16];
+    private int[] undoCastling = new int[16];
+    private int[] undoEp = new int[16];
+    private int[] undoHalfmove = new int[16];
+    private long[] undoHash = new long[16];
+
+    // one scratch move list per ply so nested generation never allocates
+    private int[][] moveBuffers = new int[4][];
+
+    public Position() {
+        this(START_FEN);
+    }
+
+    public Position(String fen) {
+        loadFen(fen);
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    // how many times the current position has occurred, counting this occurrence
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public boolean isThreefoldRepetition() {
+        return repetitions >= 3;
+    }
+
+    // --- FEN ---
+
+    private void loadFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        Arrays.fill(pieces, 0L);
+        Arrays.fill(occupancy, 0L);
+        Arrays.fill(board, Pieces.EMPTY);
+        occupied = 0L;
+        hash = 0L;
+
+        int rank = 7;
+        int file = 0;
+        for (int i = 0; i < fields[0].length(); i++) {
+            char c = fields[0].charAt(i);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                if (file > 7 || rank < 0) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                put(Pieces.fromFenSymbol(c), Squares.of(file, rank));
+                file++;
+            }
+        }
+
+        if (Long.bitCount(pieces[Pieces.of(Pieces.WHITE, Pieces.KING)]) != 1
+                || Long.bitCount(pieces[Pieces.of(Pieces.BLACK, Pieces.KING)]) != 1) {
+            throw new IllegalArgumentException("Invalid FEN, each side needs exactly one king: " + fen);
+        }
+
+        sideToMove = "b".equals(fields[1]) ? Pieces.BLACK : Pieces.WHITE;
+
+        castling = 0;
+        for (char c : fields[2].toCharArray()) {
+            switch (c) {
+                case 'K': castling |= WHITE_KINGSIDE; break;
+                case 'Q': castling |= WHITE_QUEENSIDE; break;
+                case 'k': castling |= BLACK_KINGSIDE; break;
+                case 'q': castling |= BLACK_QUEENSIDE; break;
+                default: break;
+            }
+        }
+
+        epSquare = "-".equals(fields[3]) ? Squares.NONE : Squares.parse(fields[3]);
+        halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        ply = 0;
+
+        hash ^= Zobrist.CASTLING[castling] ^ enPassantKey();
+        if (sideToMove == Pieces.BLACK) {
+            hash ^= Zobrist.BLACK_TO_MOVE;
+        }
+
+        // a FEN carries no history, so the loaded position is the first of its stretch
+        historyLength = 0;
+        recordHistory();
+    }
+
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[Squares.of(file, rank)];
+                if (piece == Pieces.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(Pieces.fenSymbol(piece));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(sideToMove == Pieces.WHITE ? " w " : " b ");
+
+        if (castling == 0) {
+            fen.append('-');
+        } else {
+            if ((castling & WHITE_KINGSIDE) != 0) fen.append('K');
+            if ((castling & WHITE_QUEENSIDE) != 0) fen.append('Q');
+            if ((castling & BLACK_KINGSIDE) != 0) fen.append('k');
+            if ((castling & BLACK_QUEENSIDE) != 0) fen.append('q');
+        }
+
+        // like most engines, only print the en passant square when a pawn can actually take there
+        fen.append(' ').append(hasEnPassantCapture() ? Squares.name(epSquare) : "-");
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+
+        return fen.toString();
+    }
+
+    private boolean hasEnPassantCapture() {
+        if (epSquare == Squares.NONE) {
+            return false;
+        }
+        int them = sideToMove ^ 1;
+        return (Attacks.PAWN[them][epSquare] & pieces[Pieces.of(sideToMove, Pieces.PAWN)]) != 0;
+    }
+
+    // the en passant file only changes the position when a capture is actually on
+    private long enPassantKey() {
+        return hasEnPassantCapture() ? Zobrist.EN_PASSANT_FILE[Squares.file(epSquare)] : 0L;
+    }
+
+    // --- board mutation ---
+
+    private void put(int piece, int square) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        occupancy[Pieces.color(piece)] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        hash ^= Zobrist.PIECE_SQUARE[piece][square];
+    }
+
+    private void remove(int piece, int square) {
+        long bit = ~(1L << square);
+        pieces[piece] &= bit;
+        occupancy[Pieces.color(piece)] &= bit;
+        occupied &= bit;
+        board[square] = Pieces.EMPTY;
+        hash ^= Zobrist.PIECE_SQUARE[piece][square];
+    }
+
+    private void shift(int piece, int from, int to) {
+        remove(piece, from);
+        put(piece, to);
+    }
+
+    public void makeMove(int move) {
+        ensureUndoCapacity();
+
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int flag = Moves.flag(move);
+        int us = sideToMove;
+        int piece = board[from];
+
+        int captureSquare = flag == Moves.FLAG_EN_PASSANT ? (us == Pieces.WHITE ? to - 8 : to + 8) : to;
+        int captured = board[captureSquare];
+
+        undoMove[ply] = move;
+        undoCaptured[ply] = captured;
+        undoCastling[ply] = castling;
+        undoEp[ply] = epSquare;
+        undoHalfmove[ply] = halfmoveClock;
+        undoHash[ply] = hash;
+        hash ^= enPassantKey() ^ Zobrist.CASTLING[castling];
+
+        if (captured != Pieces.EMPTY) {
+            remove(captured, captureSquare);
+        }
+        shift(piece, from, to);
+
+        if (flag == Moves.FLAG_PROMOTION) {
+            remove(piece, to);
+            put(Pieces.of(us, Moves.promotionType(move)), to);
+        } else if (flag == Moves.FLAG_CASTLE) {
+            moveCastlingRook(to, true);
+        }
+
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        epSquare = flag == Moves.FLAG_DOUBLE_PUSH ? (from + to) >>> 1 : Squares.NONE;
+        halfmoveClock = Pieces.type(piece) == Pieces.PAWN || captured != Pieces.EMPTY ? 0 : halfmoveClock + 1;
+        if (us == Pieces.BLACK) {
+            fullmoveNumber++;
+        }
+
+        sideToMove = us ^ 1;
+        hash ^= Zobrist.CASTLING[castling] ^ Zobrist.BLACK_TO_MOVE ^ enPassantKey();
+        ply++;
+    }
+
+    public void unmakeMove() {
+        ply--;
+        int move = undoMove[ply];
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int flag = Moves.flag(move);
+
+        sideToMove ^= 1;
+        int us = sideToMove;
+
+        if (flag == Moves.FLAG_PROMOTION) {
+            remove(board[to], to);
+            put(Pieces.of(us, Pieces.PAWN), to);
+        } else if (flag == Moves.FLAG_CASTLE) {
+            moveCastlingRook(to, false);
+        }
+        shift(board[to], to, from);
+
+        int captured = undoCaptured[ply];
+        if (captured != Pieces.EMPTY) {
+            int captureSquare = flag == Moves.FLAG_EN_PASSANT ? (us == Pieces.WHITE ? to - 8 : to + 8) : to;
+            put(captured, captureSquare);
+        }
+
+        castling = undoCastling[ply];
+        epSquare = undoEp[ply];
+        halfmoveClock = undoHalfmove[ply];
+        hash = undoHash[ply];
+        if (us == Pieces.BLACK) {
+            fullmoveNumber--;
+        }
+    }
+
+    // Applies a game move for good: the undo stack is not needed past this point.
+    public void applyMove(int move) {
+        makeMove(move);
+        ply = 0;
+
+        if (halfmoveClock == 0) {
+            // nothing before a capture or pawn move can ever recur
+            historyLength = 0;
+        }
+        recordHistory();
+    }
+
+    private void recordHistory() {
+        if (historyLength == history.length) {
+            history = Arrays.copyOf(history, historyLength * 2);
+        }
+        history[historyLength++] = hash;
+
+        // only positions with the same side to move can match, and the stretch is at most 100 plies
+        repetitions = 1;
+        for (int i = historyLength - 3; i >= 0; i -= 2) {
+            if (history[i] == hash) {
+                repetitions++;
+            }
+        }
+    }
+
+    private void moveCastlingRook(int kingTo, boolean forward) {
+        int rookFrom;
+        int rookTo;
+        switch (kingTo) {
+            case 6: rookFrom = 7; rookTo = 5; break;
+            case 2: rookFrom = 0; rookTo = 3; break;
+            case 62: rookFrom = 63; rookTo = 61; break;
+            default: rookFrom = 56; rookTo = 59; break;
+        }
+        if (forward) {
+            shift(board[rookFrom], rookFrom, rookTo);
+        } else {
+            shift(board[rookTo], rookTo, rookFrom);
+        }
+    }
+
+    private void ensureUndoCapacity() {
+        if (ply < undoMove.length) {
+            return;
+        }
+        int size = undoMove.length * 2;
+        undoMove = Arrays.copyOf(undoMove, size);
+        undoCaptured = Arrays.copyOf(undoCaptured, size);
+        undoCastling = Arrays.copyOf(undoCastling, size);
+        undoEp = Arrays.copyOf(undoEp, size);
+        undoHalfmove = Arrays.copyOf(undoHalfmove, size);
+        undoHash = Arrays.copyOf(undoHash, size);
+    }
+
+    // --- attacks ---
+
+    public boolean isSquareAttacked(int square, int byColor) {
+        if ((Attacks.PAWN[byColor ^ 1][square] & pieces[Pieces.of(byColor, Pieces.PAWN)]) != 0) {
+            return true;
+        }
+        if ((Attacks.KNIGHT[square] & pieces[Pieces.of(byColor, Pieces.KNIGHT)]) != 0) {
+            return true;
+        }
+        if ((Attacks.KING[square] & pieces[Pieces.of(byColor, Pieces.KING)]) != 0) {
+            return true;
+        }
+
+        long queens = pieces[Pieces.of(byColor, Pieces.QUEEN)];
+        long diagonal = pieces[Pieces.of(byColor, Pieces.BISHOP)] | queens;
+        if (diagonal != 0 && (Attacks.bishop(square, occupied) & diagonal) != 0) {
+            return true;
+        }
+        long straight = pieces[Pieces.of(byColor, Pieces.ROOK)] | queens;
+        return straight != 0 && (Attacks.rook(square, occupied) & straight) != 0;
+    }
+
+    public boolean isInCheck() {
+        return isKingAttacked(sideToMove);
+    }
+
+    private boolean isKingAttacked(int color) {
+        int king = Long.numberOfTrailingZeros(pieces[Pieces.of(color, Pieces.KING)]);
+        return isSquareAttacked(king, color ^ 1);
+    }
+
+    // --- move generation ---
+
+    public int generateLegalMoves(int[] out) {
+        int count = generatePseudoLegalMoves(out);
+        int us = sideToMove;
+        int legal = 0;
+
+        for (int i = 0; i < count; i++) {
+            int move = out[i];
+            makeMove(move);
+            if (!isKingAttacked(us)) {
+                out[legal++] = move;
+            }
+            unmakeMove();
+        }
+        return legal;
+    }
+
+    public boolean hasLegalMove() {
+        int[] buffer = scratch();
+        int count = generatePseudoLegalMoves(buffer);
+        int us = sideToMove;
+
+        for (int i = 0; i < count; i++) {
+            makeMove(buffer[i]);
+            boolean legal = !isKingAttacked(us);
+            unmakeMove();
+            if (legal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Resolves a from/to/promotion request to a legal move, or Moves.NONE if it is not legal here.
+    public int findLegalMove(int from, int to, int promotionType) {
+        int[] buffer = scratch();
+        int count = generateLegalMoves(buffer);
+
+        for (int i = 0; i < count; i++) {
+            int move = buffer[i];
+            if (Moves.from(move) != from || Moves.to(move) != to) {
+                continue;
+            }
+            if (Moves.flag(move) == Moves.FLAG_PROMOTION) {
+                if (Moves.promotionType(move) == promotionType) {
+                    return move;
+                }
+            } else if (promotionType <= 0) {
+                return move;
+            }
+        }
+        return Moves.NONE;
+    }
+
+    private int[] scratch() {
+        if (ply >= moveBuffers.length) {
+            moveBuffers = Arrays.copyOf(moveBuffers, ply + 4);
+        }
+        if (moveBuffers[ply] == null) {
+            moveBuffers[ply] = new int[MAX_MOVES];
+        }
+        return moveBuffers[ply];
+    }
+
+    private int generatePseudoLegalMoves(int[] out) {
+        int us = sideToMove;
+        int them = us ^ 1;
+        long own = occupancy[us];
+        long enemy = occupancy[them];
+        int n = generatePawnMoves(out, 0, us, enemy);
+
+        long knights = pieces[Pieces.of(us, Pieces.KNIGHT)];
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            n = addTargets(out, n, from, Attacks.KNIGHT[from] & ~own);
+        }
+
+        long diagonal = pieces[Pieces.of(us, Pieces.BISHOP)] | pieces[Pieces.of(us, Pieces.QUEEN)];
+        while (diagonal != 0) {
+            int from = Long.numberOfTrailingZeros(diagonal);
+            diagonal &= diagonal - 1;
+            n = addTargets(out, n, from, Attacks.bishop(from, occupied) & ~own);
+        }
+
+        long straight = pieces[Pieces.of(us, Pieces.ROOK)] | pieces[Pieces.of(us, Pieces.QUEEN)];
+        while (straight != 0) {
+            int from = Long.numberOfTrailingZeros(straight);
+            straight &= straight - 1;
+            n = addTargets(out, n, from, Attacks.rook(from, occupied) & ~own);
+        }
+
+        int king = Long.numberOfTrailingZeros(pieces[Pieces.of(us, Pieces.KING)]);
+        n = addTargets(out, n, king, Attacks.KING[king] & ~own);
+        return generateCastling(out, n, us, them);
+    }
+
+    private int generatePawnMoves(int[] out, int n, int us, long enemy) {
+        long pawns = pieces[Pieces.of(us, Pieces.PAWN)];
+        long empty = ~occupied;
+        long single;
+        long doubles;
+        long capturesWest;
+        long capturesEast;
+        int forward;
+
+        if (us == Pieces.WHITE) {
+            single = (pawns << 8) & empty;
+            doubles = ((single & RANK_3) << 8) & empty;
+            capturesWest = ((pawns & ~FILE_A) << 7) & enemy;
+            capturesEast = ((pawns & ~FILE_H) << 9) & enemy;
+            forward = 8;
+        } else {
+            single = (pawns >>> 8) & empty;
+            doubles = ((single & RANK_6) >>> 8) & empty;
+            capturesWest = ((pawns & ~FILE_A) >>> 9) & enemy;
+            capturesEast = ((pawns & ~FILE_H) >>> 7) & enemy;
+            forward = -8;
+        }
+
+        n = addPawnTargets(out, n, single, forward);
+        n = addPawnTargets(out, n, capturesWest, us == Pieces.WHITE ? 7 : -9);
+        n = addPawnTargets(out, n, capturesEast, us == Pieces.WHITE ? 9 : -7);
+
+        while (doubles != 0) {
+            int to = Long.numberOfTrailingZeros(doubles);
+            doubles &= doubles - 1;
+            out[n++] = Moves.encode(to - 2 * forward, to, Moves.FLAG_DOUBLE_PUSH, 0);
+        }
+
+        if (epSquare != Squares.NONE) {
+            long attackers = Attacks.PAWN[us ^ 1][epSquare] & pawns;
+            while (attackers != 0) {
+                int from = Long.numberOfTrailingZeros(attackers);
+                attackers &= attackers - 1;
+                out[n++] = Moves.encode(from, epSquare, Moves.FLAG_EN_PASSANT, 0);
+            }
+        }
+        return n;
+    }
+
+    private int addPawnTargets(int[] out, int n, long targets, int delta) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int from = to - delta;
+
+            if (((1L << to) & (RANK_1 | RANK_8)) != 0) {
+                out[n++] = Moves.encode(from, to, Moves.FLAG_PROMOTION, Pieces.QUEEN);
+                out[n++] = Moves.encode(from, to, Moves.FLAG_PROMOTION, Pieces.ROOK);
+                out[n++] = Moves.encode(from, to, Moves.FLAG_PROMOTION, Pieces.BISHOP);
+                out[n++] = Moves.encode(from, to, Moves.FLAG_PROMOTION, Pieces.KNIGHT);
+            } else {
+                out[n++] = Moves.encode(from, to, Moves.FLAG_NORMAL, 0);
+            }
+        }
+        return n;
+    }
+
+    private int addTargets(int[] out, int n, int from, long targets) {
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            out[n++] = Moves.encode(from, to, Moves.FLAG_NORMAL, 0);
+        }
+        return n;
+    }
+
+    private int generateCastling(int[] out, int n, int us, int them) {
+        if (us == Pieces.WHITE) {
+            if ((castling & WHITE_KINGSIDE) != 0 && canCastle(4, 7, 0x60L, 5, 6, them)) {
+                out[n++] = Moves.encode(4, 6, Moves.FLAG_CASTLE, 0);
+            }
+            if ((castling & WHITE_QUEENSIDE) != 0 && canCastle(4, 0, 0x0EL, 3, 2, them)) {
+                out[n++] = Moves.encode(4, 2, Moves.FLAG_CASTLE, 0);
+            }
+        } else {
+            if ((castling & BLACK_KINGSIDE) != 0 && canCastle(60, 63, 0x60L << 56, 61, 62, them)) {
+                out[n++] = Moves.encode(60, 62, Moves.FLAG_CASTLE, 0);
+            }
+            if ((castling & BLACK_QUEENSIDE) != 0 && canCastle(60, 56, 0x0EL << 56, 59, 58, them)) {
+                out[n++] = Moves.encode(60, 58, Moves.FLAG_CASTLE, 0);
+            }
+        }
+        return n;
+    }
+
+    private boolean canCastle(int king, int rook, long between, int passing, int target, int them) {
+        int us = them ^ 1;
+        return board[king] == Pieces.of(us, Pieces.KING)
+                && board[rook] == Pieces.of(us, Pieces.ROOK)
+                && (occupied & between) == 0
+                && !isSquareAttacked(king, them)
+                && !isSquareAttacked(passing, them)
+                && !isSquareAttacked(target, them);
+    }
+
+    // --- terminal states ---
+
+    public boolean isCheckmate() {
+        return isInCheck() && !hasLegalMove();
+    }
+
+    public boolean isStalemate() {
+        return !isInCheck() && !hasLegalMove();
+    }
+
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= 100;
+    }
+
+    public boolean isInsufficientMaterial() {
+        for (int color = 0; color < 2; color++) {
+            if ((pieces[Pieces.of(color, Pieces.PAWN)] | pieces[Pieces.of(color, Pieces.ROOK)]
+                    | pieces[Pieces.of(color, Pieces.QUEEN)]) != 0) {
+                return false;
+            }
+        }
+
+        long knights = pieces[Pieces.of(Pieces.WHITE, Pieces.KNIGHT)] | pieces[Pieces.of(Pieces.BLACK, Pieces.KNIGHT)];
+        long bishops = pieces[Pieces.of(Pieces.WHITE, Pieces.BISHOP)] | pieces[Pieces.of(Pieces.BLACK, Pieces.BISHOP)];
+        int minors = Long.bitCount(knights) + Long.bitCount(bishops);
+
+        if (minors <= 1) {
+            return true;
+        }
+        if (knights != 0) {
+            return false;
+        }
+
+        // bishops only: a draw when every bishop lives on the same square color
+        long lightSquares = 0x55AA55AA55AA55AAL;
+        return (bishops & lightSquares) == 0 || (bishops & ~lightSquares) == 0;
+    }
+
+    // --- notation ---
+
+    public String toSan(int move) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int flag = Moves.flag(move);
+        int piece = board[from];
+        int type = Pieces.type(piece);
+
+        StringBuilder san = new StringBuilder(8);
+
+        if (flag == Moves.FLAG_CASTLE) {
+            san.append(Squares.file(to) == 6 ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = board[to] != Pieces.EMPTY || flag == Moves.FLAG_EN_PASSANT;
+
+            if (type == Pieces.PAWN) {
+                if (capture) {
+                    san.append((char) ('a' + Squares.file(from)));
+                }
+            } else {
+                san.append(Character.toUpperCase(Pieces.typeSymbol(type)));
+                appendDisambiguation(san, move, piece);
+            }
+
+            if (capture) {
+                san.append('x');
+            }
+            san.append(Squares.name(to));
+
+            if (flag == Moves.FLAG_PROMOTION) {
+                san.append('=').append(Character.toUpperCase(Pieces.typeSymbol(Moves.promotionType(move))));
+            }
+        }
+
+        makeMove(move);
+        if (isInCheck()) {
+            san.append(hasLegalMove() ? '+' : '#');
+        }
+        unmakeMove();
+
+        return san.toString();
+    }
+
+    private void appendDisambiguation(StringBuilder san, int move, int piece) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int[] buffer = scratch();
+        int count = generateLegalMoves(buffer);
+
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int i = 0; i < count; i++) {
+            int other = Moves.from(buffer[i]);
+            if (other == from || Moves.to(buffer[i]) != to || board[other] != piece) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= Squares.file(other) == Squares.file(from);
+            sameRank |= Squares.rank(other) == Squares.rank(from);
+        }
+
+        if (!ambiguous) {
+            return;
+        }
+        if (!sameFile) {
+            san.append((char) ('a' + Squares.file(from)));
+        } else if (!sameRank) {
+            san.append((char) ('1' + Squares.rank(from)));
+        } else {
+            san.append(Squares.name(from));
+        }
+    }
+}
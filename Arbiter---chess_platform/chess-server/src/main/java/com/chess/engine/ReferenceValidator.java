@@ -0,0 +1,89 @@
+package com.chess.engine;
+
+import com.chess.config.ServerConfig;
+import com.chess.metrics.MetricsRegistry;
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.json.JSONObject;
+import java.util.concurrent.atomic.LongAdder;
+
+// Shadow check of the bitboard engine against chesslib on live games. The test suite holds the two to
+// perft counts and to each other offline; engine.reference.check=true also compares legality and the
+// resulting FEN for every move actually played.
+public class ReferenceValidator {
+    private static final ReferenceValidator INSTANCE = new ReferenceValidator();
+
+    private final boolean enabled;
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder legalityMismatches = new LongAdder();
+    private final LongAdder fenMismatches = new LongAdder();
+
+    private ReferenceValidator() {
+        this.enabled = ServerConfig.getInstance().getBoolean("engine.reference.check", false);
+        MetricsRegistry.getInstance().register("engine.reference", this::getMetrics);
+    }
+
+    public static ReferenceValidator getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // fenAfter is null when the engine rejected the move
+    public void check(String fenBefore, String uci, String fenAfter) {
+        if (!enabled) {
+            return;
+        }
+        checks.increment();
+
+        try {
+            Board board = new Board();
+            board.loadFromFen(fenBefore);
+
+            boolean referenceLegal = false;
+            for (Move move : board.legalMoves()) {
+                if (move.toString().equals(uci)) {
+                    referenceLegal = true;
+                    board.doMove(move);
+                    break;
+                }
+            }
+
+            if (referenceLegal != (fenAfter != null)) {
+                legalityMismatches.increment();
+                System.err.println("Engine legality mismatch for " + uci + " in " + fenBefore
+                        + ": engine=" + (fenAfter != null) + " reference=" + referenceLegal);
+                return;
+            }
+
+            // the en passant field is left out: libraries disagree on when to print it
+            if (referenceLegal && !stripEnPassant(board.getFen()).equals(stripEnPassant(fenAfter))) {
+                fenMismatches.increment();
+                System.err.println("Engine FEN mismatch for " + uci + " in " + fenBefore
+                        + ": engine=" + fenAfter + " reference=" + board.getFen());
+            }
+        } catch (Exception e) {
+            System.err.println("Reference check failed for " + uci + ": " + e.getMessage());
+        }
+    }
+
+    private static String stripEnPassant(String fen) {
+        String[] fields = fen.split(" ");
+        if (fields.length < 4) {
+            return fen;
+        }
+        fields[3] = "-";
+        return String.join(" ", fields);
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("enabled", enabled);
+        metrics.put("checks", checks.sum());
+        metrics.put("legalityMismatches", legalityMismatches.sum());
+        metrics.put("fenMismatches", fenMismatches.sum());
+        return metrics;
+    }
+}
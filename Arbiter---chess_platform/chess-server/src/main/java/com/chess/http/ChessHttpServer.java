@@ -1,29 +1,54 @@
 package com.chess.http;
 
+import com.chess.config.ServerConfig;
+import com.chess.metrics.MetricsRegistry;
 import com.chess.service.AuthService;
 import com.chess.service.GameService;
+import com.chess.service.LeaderboardIndex;
+import com.chess.service.OverloadedException;
+import com.chess.service.RateLimiter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.json.JSONObject;
 import java.io.*;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executors;
 
 public class ChessHttpServer {
     private final HttpServer server;
     private final AuthService authService;
     private final GameService gameService;
+    private final LeaderboardIndex leaderboard;
+    private final RateLimiter authByAddress;
+    private final RateLimiter authByUsername;
+    private final String metricsToken;
     private final int port;
 
-    public ChessHttpServer(int port, AuthService authService, GameService gameService)
-            throws IOException {
+    public ChessHttpServer(int port, AuthService authService, GameService gameService,
+                           LeaderboardIndex leaderboard) throws IOException {
         this.port = port;
         this.authService = authService;
         this.gameService = gameService;
+        this.leaderboard = leaderboard;
+
+        // every sign-in costs a bcrypt run, so attempts are throttled per client and per account
+        ServerConfig config = ServerConfig.getInstance();
+        int maxKeys = config.getInt("auth.ratelimit.max.keys", 100000);
+        this.authByAddress = new RateLimiter("auth.ratelimit.address",
+                config.getInt("auth.ratelimit.address.per.minute", 30),
+                config.getInt("auth.ratelimit.address.burst", 10), maxKeys);
+        this.authByUsername = new RateLimiter("auth.ratelimit.username",
+                config.getInt("auth.ratelimit.username.per.minute", 10),
+                config.getInt("auth.ratelimit.username.burst", 5), maxKeys);
+        this.metricsToken = config.getString("metrics.token", "");
 
         this.server = HttpServer.create(new InetSocketAddress(port), 0);
         setupRoutes();
@@ -43,10 +68,13 @@ public class ChessHttpServer {
     private void setupRoutes() {
         server.createContext("/api/auth/register", new AuthHandler());
         server.createContext("/api/auth/login", new AuthHandler());
+        server.createContext("/api/auth/logout", new LogoutHandler());
         server.createContext("/api/game/create", new GameHandler());
         server.createContext("/api/game/join/", new GameHandler());
         server.createContext("/api/game/", new GameHandler());
         server.createContext("/api/user/games", new UserGamesHandler());  // NEW
+        server.createContext("/api/metrics", new MetricsHandler());
+        server.createContext("/api/leaderboard", new LeaderboardHandler());
 
         server.createContext("/", new StaticFileHandler());
     }
@@ -100,6 +128,117 @@ public class ChessHttpServer {
     }
 
 
+    // Metrics expose internal load and per-session detail, so they are for operators only: callers must
+    // present metrics.token as a bearer token, and when no token is configured only loopback is served.
+    private class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+                return;
+            }
+
+            if (!isMetricsCaller(exchange)) {
+                sendResponse(exchange, 403, "{\"error\":\"Forbidden\"}");
+                return;
+            }
+
+            sendResponse(exchange, 200, MetricsRegistry.getInstance().snapshot().toString());
+        }
+
+        private boolean isMetricsCaller(HttpExchange exchange) {
+            if (metricsToken.isEmpty()) {
+                return exchange.getRemoteAddress().getAddress().isLoopbackAddress();
+            }
+            String token = getTokenFromHeader(exchange);
+            // constant time, so the token cannot be guessed a byte at a time
+            return token != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                    metricsToken.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // GET /api/leaderboard?offset=&limit=          a page of the ranking, best first
+    // GET /api/leaderboard/around?userId=&radius=   a player and their neighbours; defaults to the caller
+    // GET /api/leaderboard/rank/{userId}            one player's rank
+    private class LeaderboardHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+                return;
+            }
+
+            try {
+                String path = exchange.getRequestURI().getPath();
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                JSONObject response;
+
+                if (path.startsWith("/api/leaderboard/rank/")) {
+                    response = leaderboard.rankOf(Integer.parseInt(path.substring("/api/leaderboard/rank/".length())));
+                } else if (path.equals("/api/leaderboard/around")) {
+                    int userId;
+                    if (query.containsKey("userId")) {
+                        userId = Integer.parseInt(query.get("userId"));
+                    } else {
+                        String token = getTokenFromHeader(exchange);
+                        if (token == null || !authService.validateToken(token)) {
+                            sendResponse(exchange, 401, "{\"error\":\"Unauthorized\"}");
+                            return;
+                        }
+                        userId = authService.getUserIdFromToken(token);
+                    }
+                    response = leaderboard.around(userId,
+                            Integer.parseInt(query.getOrDefault("radius", "10")));
+                } else if (path.equals("/api/leaderboard") || path.equals("/api/leaderboard/")) {
+                    response = leaderboard.top(Integer.parseInt(query.getOrDefault("offset", "0")),
+                            Integer.parseInt(query.getOrDefault("limit", "100")));
+                } else {
+                    sendResponse(exchange, 404, "{\"error\":\"Not Found\"}");
+                    return;
+                }
+
+                if (response == null) {
+                    sendResponse(exchange, 404, "{\"error\":\"Player not ranked\"}");
+                    return;
+                }
+                sendResponse(exchange, 200, response.toString());
+            } catch (Exception e) {
+                JSONObject error = new JSONObject();
+                error.put("error", e.getMessage());
+                sendResponse(exchange, 400, error.toString());
+            }
+        }
+    }
+
+    private class LogoutHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "http://localhost:5173");
+                exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, OPTIONS");
+                exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, "{\"error\":\"Method Not Allowed\"}");
+                return;
+            }
+
+            try {
+                authService.invalidateToken(getTokenFromHeader(exchange));
+                JSONObject response = new JSONObject();
+                response.put("message", "Logged out");
+                sendResponse(exchange, 200, response.toString());
+            } catch (Exception e) {
+                JSONObject error = new JSONObject();
+                error.put("error", e.getMessage());
+                sendResponse(exchange, 500, error.toString());
+            }
+        }
+    }
+
     private class AuthHandler implements HttpHandler {
         @Override
         public void handle(HttpExchange exchange) throws IOException {
@@ -117,9 +256,21 @@ public class ChessHttpServer {
                     return;
                 }
 
+                int retryAfter = authByAddress.tryAcquire(exchange.getRemoteAddress().getAddress().getHostAddress());
+                if (retryAfter > 0) {
+                    sendTooManyRequests(exchange, retryAfter);
+                    return;
+                }
+
                 JSONObject request = parseRequestBody(exchange);
                 String path = exchange.getRequestURI().getPath();
 
+                retryAfter = authByUsername.tryAcquire(request.getString("username").toLowerCase());
+                if (retryAfter > 0) {
+                    sendTooManyRequests(exchange, retryAfter);
+                    return;
+                }
+
                 JSONObject response = new JSONObject();
 
                 if (path.endsWith("/register")) {
@@ -141,6 +292,11 @@ public class ChessHttpServer {
 
                 sendResponse(exchange, 200, response.toString());
 
+            } catch (OverloadedException e) {
+                JSONObject error = new JSONObject();
+                error.put("error", e.getMessage());
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+                sendResponse(exchange, 503, error.toString());
             } catch (Exception e) {
                 JSONObject error = new JSONObject();
                 error.put("error", e.getMessage());
@@ -175,7 +331,10 @@ public class ChessHttpServer {
                 JSONObject response = new JSONObject();
 
                 if (path.endsWith("/create") && "POST".equals(exchange.getRequestMethod())) {
-                    String gameCode = gameService.createGame(userId);
+                    // time control is optional; without one the game is untimed
+                    JSONObject body = parseOptionalRequestBody(exchange);
+                    String gameCode = gameService.createGame(userId,
+                            body.optLong("baseSeconds", 0) * 1000, body.optLong("incrementSeconds", 0) * 1000);
                     response.put("gameCode", gameCode);
                     response.put("message", "Game created successfully");
 
@@ -185,6 +344,14 @@ public class ChessHttpServer {
                     response.put("success", joined);
                     response.put("gameCode", gameCode);
 
+                } else if (path.endsWith("/game/waiting") && "GET".equals(exchange.getRequestMethod())) {
+                    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                    response = gameService.getWaitingGames().page(
+                            query.containsKey("before") ? Long.valueOf(query.get("before")) : null,
+                            query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : 20,
+                            query.containsKey("minRating") ? Integer.valueOf(query.get("minRating")) : null,
+                            query.containsKey("maxRating") ? Integer.valueOf(query.get("maxRating")) : null);
+
                 } else if (path.contains("/game/") && "GET".equals(exchange.getRequestMethod())) {
                     String gameCode = parts[parts.length - 1];
                     if (!gameCode.equals("create") && !gameCode.equals("join")) {
@@ -263,6 +430,34 @@ public class ChessHttpServer {
         }
     }
 
+    private Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+
+        for (String param : query.split("&")) {
+            String[] pair = param.split("=", 2);
+            if (pair.length == 2) {
+                params.put(pair[0], pair[1]);
+            }
+        }
+        return params;
+    }
+
+    private JSONObject parseOptionalRequestBody(HttpExchange exchange) throws IOException {
+        try (BufferedReader br = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), "utf-8"))) {
+            StringBuilder requestBody = new StringBuilder();
+            String line;
+            while ((line = br.readLine()) != null) {
+                requestBody.append(line);
+            }
+            String body = requestBody.toString().trim();
+            return body.isEmpty() ? new JSONObject() : new JSONObject(body);
+        }
+    }
+
     private String getTokenFromHeader(HttpExchange exchange) {
         String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -271,6 +466,13 @@ public class ChessHttpServer {
         return null;
     }
 
+    private void sendTooManyRequests(HttpExchange exchange, int retryAfterSeconds) throws IOException {
+        JSONObject error = new JSONObject();
+        error.put("error", "Too many attempts, please wait before trying again");
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+        sendResponse(exchange, 429, error.toString());
+    }
+
     private void sendResponse(HttpExchange exchange, int statusCode, String response)
             throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "application/json");
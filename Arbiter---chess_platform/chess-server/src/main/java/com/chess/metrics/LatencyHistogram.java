@@ -0,0 +1,74 @@
+package com.chess.metrics;
+
+import org.json.JSONObject;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    // bucket 0 holds samples under 1us, bucket i holds [2^(i-1), 2^i) microseconds
+    private static final int BUCKETS = 32;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long percentileMicros(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return upperBoundMicros(i);
+            }
+        }
+        return upperBoundMicros(BUCKETS - 1);
+    }
+
+    public JSONObject toJson() {
+        long total = count.sum();
+
+        JSONObject json = new JSONObject();
+        json.put("count", total);
+        json.put("meanMicros", total == 0 ? 0 : totalMicros.sum() / total);
+        json.put("maxMicros", maxMicros.get());
+        json.put("p50Micros", percentileMicros(0.50));
+        json.put("p90Micros", percentileMicros(0.90));
+        json.put("p99Micros", percentileMicros(0.99));
+
+        JSONObject histogram = new JSONObject();
+        for (int i = 0; i < BUCKETS; i++) {
+            long value = buckets.get(i);
+            if (value > 0) {
+                histogram.put("le_" + upperBoundMicros(i) + "us", value);
+            }
+        }
+        json.put("buckets", histogram);
+
+        return json;
+    }
+
+    private static long upperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+}
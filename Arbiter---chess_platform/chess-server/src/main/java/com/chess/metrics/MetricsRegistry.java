@@ -0,0 +1,40 @@
+package com.chess.metrics;
+
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+public class MetricsRegistry {
+    private static final MetricsRegistry instance = new MetricsRegistry();
+    private final Map<String, Supplier<JSONObject>> sources = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public void register(String name, Supplier<JSONObject> source) {
+        sources.put(name, source);
+    }
+
+    public void unregister(String name) {
+        sources.remove(name);
+    }
+
+    public JSONObject snapshot() {
+        JSONObject snapshot = new JSONObject();
+
+        for (Map.Entry<String, Supplier<JSONObject>> entry : sources.entrySet()) {
+            try {
+                snapshot.put(entry.getKey(), entry.getValue().get());
+            } catch (Exception e) {
+                snapshot.put(entry.getKey(), new JSONObject().put("error", String.valueOf(e.getMessage())));
+            }
+        }
+
+        return snapshot;
+    }
+}
@@ -15,6 +15,11 @@ public class Game {
     private String turn;
     private LocalDateTime createdAt;
     private LocalDateTime lastMoveAt;
+    // clocks are in milliseconds; a base time of 0 means the game is untimed
+    private long timeBaseMs;
+    private long timeIncrementMs;
+    private long whiteTimeMs;
+    private long blackTimeMs;
 
     public enum GameStatus {
         WAITING, ACTIVE, FINISHED, ABANDONED
@@ -36,6 +41,25 @@ public class Game {
         this.whitePlayerId = whitePlayerId;
     }
 
+    public Game(Game other) {
+        this.gameId = other.gameId;
+        this.gameCode = other.gameCode;
+        this.whitePlayerId = other.whitePlayerId;
+        this.blackPlayerId = other.blackPlayerId;
+        this.whitePlayerName = other.whitePlayerName;
+        this.blackPlayerName = other.blackPlayerName;
+        this.fenPosition = other.fenPosition;
+        this.status = other.status;
+        this.result = other.result;
+        this.turn = other.turn;
+        this.createdAt = other.createdAt;
+        this.lastMoveAt = other.lastMoveAt;
+        this.timeBaseMs = other.timeBaseMs;
+        this.timeIncrementMs = other.timeIncrementMs;
+        this.whiteTimeMs = other.whiteTimeMs;
+        this.blackTimeMs = other.blackTimeMs;
+    }
+
     public int getGameId() { return gameId; }
     public void setGameId(int gameId) { this.gameId = gameId; }
 
@@ -72,6 +96,27 @@ public class Game {
     public LocalDateTime getLastMoveAt() { return lastMoveAt; }
     public void setLastMoveAt(LocalDateTime lastMoveAt) { this.lastMoveAt = lastMoveAt; }
 
+    public long getTimeBaseMs() { return timeBaseMs; }
+    public void setTimeBaseMs(long timeBaseMs) { this.timeBaseMs = timeBaseMs; }
+
+    public long getTimeIncrementMs() { return timeIncrementMs; }
+    public void setTimeIncrementMs(long timeIncrementMs) { this.timeIncrementMs = timeIncrementMs; }
+
+    public long getWhiteTimeMs() { return whiteTimeMs; }
+    public void setWhiteTimeMs(long whiteTimeMs) { this.whiteTimeMs = whiteTimeMs; }
+
+    public long getBlackTimeMs() { return blackTimeMs; }
+    public void setBlackTimeMs(long blackTimeMs) { this.blackTimeMs = blackTimeMs; }
+
+    public boolean isTimed() { return timeBaseMs > 0; }
+
+    public void setTimeControl(long baseMs, long incrementMs) {
+        this.timeBaseMs = baseMs;
+        this.timeIncrementMs = incrementMs;
+        this.whiteTimeMs = baseMs;
+        this.blackTimeMs = baseMs;
+    }
+
     public boolean isWhite(int userId) {
         return userId == whitePlayerId;
     }
@@ -0,0 +1,19 @@
+package com.chess.models;
+
+public class Rating {
+    private final double rating;
+    private final double deviation;
+    private final double volatility;
+
+    public Rating(double rating, double deviation, double volatility) {
+        this.rating = rating;
+        this.deviation = deviation;
+        this.volatility = volatility;
+    }
+
+    public double getRating() { return rating; }
+
+    public double getDeviation() { return deviation; }
+
+    public double getVolatility() { return volatility; }
+}
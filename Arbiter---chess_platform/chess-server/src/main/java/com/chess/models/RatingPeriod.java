@@ -0,0 +1,25 @@
+package com.chess.models;
+
+import java.sql.Timestamp;
+
+public class RatingPeriod {
+    private final int periodId;
+    private final Timestamp startedAt;
+    private final Timestamp endedAt;
+    private final boolean completed;
+
+    public RatingPeriod(int periodId, Timestamp startedAt, Timestamp endedAt, boolean completed) {
+        this.periodId = periodId;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+        this.completed = completed;
+    }
+
+    public int getPeriodId() { return periodId; }
+
+    public Timestamp getStartedAt() { return startedAt; }
+
+    public Timestamp getEndedAt() { return endedAt; }
+
+    public boolean isCompleted() { return completed; }
+}
@@ -0,0 +1,27 @@
+package com.chess.models;
+
+public class WaitingGame {
+    private final String gameCode;
+    private final int creatorId;
+    private final String creatorName;
+    private final int creatorRating;
+    private final long createdAt;
+
+    public WaitingGame(String gameCode, int creatorId, String creatorName, int creatorRating, long createdAt) {
+        this.gameCode = gameCode;
+        this.creatorId = creatorId;
+        this.creatorName = creatorName;
+        this.creatorRating = creatorRating;
+        this.createdAt = createdAt;
+    }
+
+    public String getGameCode() { return gameCode; }
+
+    public int getCreatorId() { return creatorId; }
+
+    public String getCreatorName() { return creatorName; }
+
+    public int getCreatorRating() { return creatorRating; }
+
+    public long getCreatedAt() { return createdAt; }
+}
@@ -1,23 +1,28 @@
 package com.chess.service;
 
+import com.chess.config.ServerConfig;
 import com.chess.dao.UserDAO;
 import com.chess.models.User;
-import org.mindrot.jbcrypt.BCrypt;
 import org.json.JSONObject;
+import java.security.SecureRandom;
 import java.sql.SQLException;
 import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 public class AuthService {
     private final UserDAO userDAO;
+    private final LeaderboardIndex leaderboard;
+    private final TokenDenylist denylist;
+    private final SecureRandom random = new SecureRandom();
     private static final String SECRET_KEY = "enpassant";
-    private final Map<String, Integer> tokenCache = new HashMap<>();
+    private final TokenVerifier verifier = new TokenVerifier(SECRET_KEY);
+    private final PasswordHasher hasher = new PasswordHasher();
+    private final TokenCache tokenCache =
+            new TokenCache(ServerConfig.getInstance().getInt("auth.token.cache.size", 100000));
 
-    public AuthService(UserDAO userDAO) {
+    public AuthService(UserDAO userDAO, LeaderboardIndex leaderboard, TokenDenylist denylist) {
         this.userDAO = userDAO;
+        this.leaderboard = leaderboard;
+        this.denylist = denylist;
     }
 
     public String register(String username, String password) throws SQLException {
@@ -33,10 +38,11 @@ public class AuthService {
             throw new IllegalArgumentException("Password must be at least 6 characters");
         }
 
-        String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt(12));
+        String passwordHash = hasher.hash(password);
 
         User user = new User(username, passwordHash);
         userDAO.createUser(user);
+        leaderboard.put(user.getUserId(), username, user.getRating());
 
         return generateToken(user.getUserId(), username);
     }
@@ -48,75 +54,60 @@ public class AuthService {
             throw new IllegalArgumentException("Invalid username or password");
         }
 
-        if (!BCrypt.checkpw(password, user.getPasswordHash())) {
+        if (!hasher.verify(password, user.getPasswordHash())) {
             throw new IllegalArgumentException("Invalid username or password");
         }
 
+        if (hasher.needsUpgrade(user.getPasswordHash())) {
+            int userId = user.getUserId();
+            hasher.upgradeLater(password, hash -> userDAO.updatePasswordHash(userId, hash));
+        }
+
         return generateToken(user.getUserId(), username);
     }
 
     public boolean validateToken(String token) {
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                return false;
-            }
-
-            if (tokenCache.containsKey(token)) {
-                return true;
-            }
-
-            String header = parts[0];
-            String payload = parts[1];
-            String signature = parts[2];
-
-            String computedSignature = hmacSha256(header + "." + payload, SECRET_KEY);
-            if (!computedSignature.equals(signature)) {
-                return false;
-            }
-
-            String decodedPayload = new String(Base64.getUrlDecoder().decode(payload));
-            JSONObject payloadObj = new JSONObject(decodedPayload);
-
-            long expiration = payloadObj.getLong("exp");
-            if (System.currentTimeMillis() > expiration) {
-                return false;
-            }
-
-            int userId = payloadObj.getInt("userId");
-            tokenCache.put(token, userId);
-
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return token != null && resolve(token) != null;
     }
 
     public int getUserIdFromToken(String token) {
-        try {
-            if (tokenCache.containsKey(token)) {
-                return tokenCache.get(token);
-            }
-
-            String[] parts = token.split("\\.");
-            String payload = parts[1];
-
-            String decodedPayload = new String(Base64.getUrlDecoder().decode(payload));
-            JSONObject payloadObj = new JSONObject(decodedPayload);
-
-            int userId = payloadObj.getInt("userId");
-            tokenCache.put(token, userId);
-
-            return userId;
-        } catch (Exception e) {
+        TokenCache.CachedToken cached = token != null ? resolve(token) : null;
+        if (cached == null) {
             throw new IllegalArgumentException("Invalid token");
         }
+        return cached.getUserId();
     }
 
-    public void invalidateToken(String token) {
+    // Revokes the token everywhere until it expires; a token that is already invalid is left alone.
+    public void invalidateToken(String token) throws SQLException {
+        TokenCache.CachedToken cached = token != null ? resolve(token) : null;
+        if (cached == null) {
+            return;
+        }
+        denylist.revoke(cached.getTokenId(), cached.getExpiresAt());
         tokenCache.remove(token);
     }
 
+    // The token's claims if its signature checks out and it has not expired, otherwise null.
+    private TokenCache.CachedToken resolve(String token) {
+        TokenCache.CachedToken cached = tokenCache.get(token);
+        if (cached == null) {
+            TokenVerifier.Claims claims = verifier.verify(token);
+            if (claims == null || System.currentTimeMillis() > claims.getExpiresAt()) {
+                return null;
+            }
+            cached = tokenCache.put(token, claims.getTokenId(), claims.getUserId(), claims.getUsername(),
+                    claims.getExpiresAt());
+        }
+
+        // checked on hits too: the revocation may have come from another server
+        if (denylist.isRevoked(cached.getTokenId())) {
+            tokenCache.remove(token);
+            return null;
+        }
+        return cached;
+    }
+
     private String generateToken(int userId, String username) {
         try {
             JSONObject header = new JSONObject();
@@ -124,29 +115,26 @@ public class AuthService {
             header.put("typ", "JWT");
             String encodedHeader = Base64.getUrlEncoder().withoutPadding()
                     .encodeToString(header.toString().getBytes());
+            long expiration = System.currentTimeMillis() + 86400000; // 24 hours
+            byte[] tokenId = new byte[16];
+            random.nextBytes(tokenId);
+            String jti = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenId);
             JSONObject payload = new JSONObject();
+            payload.put("jti", jti);
             payload.put("userId", userId);
             payload.put("username", username);
-            payload.put("exp", System.currentTimeMillis() + 86400000); // 24 hours
+            payload.put("exp", expiration);
             String encodedPayload = Base64.getUrlEncoder().withoutPadding()
                     .encodeToString(payload.toString().getBytes());
 
             String data = encodedHeader + "." + encodedPayload;
-            String signature = hmacSha256(data, SECRET_KEY);
+            String signature = verifier.sign(data);
 
-            tokenCache.put(data + "." + signature, userId);
+            tokenCache.put(data + "." + signature, jti, userId, username, expiration);
 
             return data + "." + signature;
         } catch (Exception e) {
             throw new RuntimeException("Failed to generate token", e);
         }
     }
-
-    private String hmacSha256(String data, String key) throws Exception {
-        Mac sha256HMAC = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(), "HmacSHA256");
-        sha256HMAC.init(secretKey);
-        byte[] hash = sha256HMAC.doFinal(data.getBytes());
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.dao.GameCodeDAO;
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hands out six-digit game codes from blocks reserved in the database, so a code costs no round-trip.
+// Sequence values go through an affine permutation of 0..999999: every value maps to a distinct code,
+// and consecutive games still get unrelated-looking codes. Once the sequence runs out, codes freed
+// by archiving old finished games are reused.
+public class GameCodeAllocator {
+    private static final long CODE_SPACE = 1_000_000L;
+    // coprime with 10^6, which makes the mapping a bijection
+    private static final long MULTIPLIER = 738_421L;
+    private static final long OFFSET = 271_828L;
+
+    private final GameCodeDAO gameCodeDAO;
+    private final int blockSize;
+    private final long archiveAfterMs;
+    private final int archiveBatchSize;
+
+    private final ArrayDeque<String> block = new ArrayDeque<>();
+    private boolean sequenceExhausted;
+
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder sequenceBlocks = new LongAdder();
+    private final LongAdder recycledBlocks = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder archived = new LongAdder();
+
+    private final ScheduledExecutorService archiver;
+
+    public GameCodeAllocator(GameCodeDAO gameCodeDAO) {
+        this.gameCodeDAO = gameCodeDAO;
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.blockSize = config.getInt("games.codes.block.size", 100);
+        this.archiveAfterMs = config.getLong("games.codes.archive.after", 30L * 24 * 60 * 60 * 1000);
+        this.archiveBatchSize = config.getInt("games.codes.archive.batch.size", 500);
+        long archiveInterval = config.getLong("games.codes.archive.interval", 3600000);
+
+        this.archiver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "game-code-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(this::archive, archiveInterval, archiveInterval, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.getInstance().register("games.codes", this::getMetrics);
+    }
+
+    public synchronized String next() throws SQLException {
+        if (block.isEmpty()) {
+            refill();
+        }
+        allocated.increment();
+        return block.poll();
+    }
+
+    // A code that is already taken, e.g. by a game created before the allocator existed. The caller just asks again.
+    public void recordCollision() {
+        collisions.increment();
+    }
+
+    private void refill() throws SQLException {
+        if (!sequenceExhausted) {
+            long start = gameCodeDAO.reserveSequenceBlock(blockSize);
+            long end = Math.min(start + blockSize, CODE_SPACE);
+            for (long value = start; value < end; value++) {
+                block.add(toCode(value));
+            }
+            sequenceBlocks.increment();
+            sequenceExhausted = end >= CODE_SPACE;
+            if (!block.isEmpty()) {
+                return;
+            }
+        }
+
+        List<String> recycled = gameCodeDAO.claimRecycledCodes(blockSize);
+        if (recycled.isEmpty()) {
+            throw new IllegalStateException("No game codes available, please retry later");
+        }
+        block.addAll(recycled);
+        recycledBlocks.increment();
+    }
+
+    private static String toCode(long value) {
+        return String.format("%06d", (value * MULTIPLIER + OFFSET) % CODE_SPACE);
+    }
+
+    private void archive() {
+        try {
+            Timestamp cutoff = new Timestamp(System.currentTimeMillis() - archiveAfterMs);
+            int freed;
+            do {
+                freed = gameCodeDAO.archiveFinishedGames(cutoff, archiveBatchSize);
+                archived.add(freed);
+            } while (freed == archiveBatchSize);
+        } catch (Exception e) {
+            System.err.println("Game code archival failed: " + e.getMessage());
+        }
+    }
+
+    // Returns the unused rest of the current block to the pool instead of losing it.
+    public void shutdown() {
+        archiver.shutdownNow();
+
+        List<String> unused;
+        synchronized (this) {
+            unused = new ArrayList<>(block);
+            block.clear();
+        }
+        try {
+            gameCodeDAO.recycleCodes(unused);
+        } catch (SQLException e) {
+            System.err.println("Could not return " + unused.size() + " unused game codes: " + e.getMessage());
+        }
+    }
+
+    public synchronized JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("allocated", allocated.sum());
+        metrics.put("available", block.size());
+        metrics.put("sequenceBlocks", sequenceBlocks.sum());
+        metrics.put("recycledBlocks", recycledBlocks.sum());
+        metrics.put("sequenceExhausted", sequenceExhausted);
+        metrics.put("collisions", collisions.sum());
+        metrics.put("archived", archived.sum());
+        return metrics;
+    }
+}
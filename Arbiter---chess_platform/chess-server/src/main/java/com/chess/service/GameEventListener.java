@@ -0,0 +1,15 @@
+package com.chess.service;
+
+import com.chess.models.Game;
+
+// Told about game changes that happen outside the game's socket: games that start when someone joins
+// over HTTP, games that end without a player action to answer, e.g. on time or by abandonment, and
+// games dropped from memory. All are called on the game's stripe.
+public interface GameEventListener {
+    void onGameStarted(Game game);
+
+    void onGameEnded(Game game, String reason);
+
+    // the game was evicted or invalidated; anything kept per game in memory can go with it
+    void onGameUnloaded(String gameCode);
+}
@@ -0,0 +1,146 @@
+package com.chess.service;
+
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Every game is pinned to one single-threaded stripe, so work for a game runs strictly in
+// submission order while games on different stripes run in parallel without a shared lock.
+public class GameExecutor {
+    private static final ThreadLocal<Integer> CURRENT_STRIPE = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor[] stripes;
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+
+    public GameExecutor(int stripeCount) {
+        this.stripes = new ThreadPoolExecutor[stripeCount];
+
+        for (int i = 0; i < stripeCount; i++) {
+            final int stripe = i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), r -> {
+                        Thread thread = new Thread(() -> {
+                            CURRENT_STRIPE.set(stripe);
+                            r.run();
+                        }, "game-stripe-" + stripe);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+
+        MetricsRegistry.getInstance().register("games.executor", this::getMetrics);
+    }
+
+    public void execute(String gameCode, Runnable task) {
+        long queuedAt = System.nanoTime();
+        stripes[stripeFor(gameCode)].execute(() -> {
+            queueWait.recordNanos(System.nanoTime() - queuedAt);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failed.increment();
+                System.err.println("Game task for " + gameCode + " failed: " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                executed.increment();
+            }
+        });
+    }
+
+    public <T> T call(String gameCode, Callable<T> task) throws SQLException {
+        int stripe = stripeFor(gameCode);
+
+        // already on this game's stripe: queueing behind ourselves would deadlock
+        Integer current = CURRENT_STRIPE.get();
+        if (current != null && current == stripe) {
+            return invoke(task);
+        }
+
+        long queuedAt = System.nanoTime();
+        Future<T> future = stripes[stripe].submit(() -> {
+            queueWait.recordNanos(System.nanoTime() - queuedAt);
+            try {
+                return task.call();
+            } finally {
+                executed.increment();
+            }
+        });
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for game " + gameCode);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            try {
+                stripe.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public JSONObject getMetrics() {
+        JSONArray depths = new JSONArray();
+        for (ThreadPoolExecutor stripe : stripes) {
+            depths.put(stripe.getQueue().size());
+        }
+
+        JSONObject metrics = new JSONObject();
+        metrics.put("stripes", stripes.length);
+        metrics.put("queueDepths", depths);
+        metrics.put("executed", executed.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("queueWait", queueWait.toJson());
+        return metrics;
+    }
+
+    private int stripeFor(String gameCode) {
+        int h = gameCode.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % stripes.length;
+    }
+
+    private <T> T invoke(Callable<T> task) throws SQLException {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    private SQLException rethrow(Throwable cause) {
+        failed.increment();
+        if (cause instanceof SQLException) {
+            return (SQLException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+    }
+}
@@ -1,47 +1,213 @@
 package com.chess.service;
 
+import com.chess.config.ServerConfig;
+import com.chess.dao.GameCodeDAO;
 import com.chess.dao.GameDAO;
 import com.chess.dao.MoveDAO;
+import com.chess.dao.RatingDAO;
 import com.chess.dao.UserDAO;
+import com.chess.engine.Moves;
+import com.chess.engine.Pieces;
+import com.chess.engine.Position;
+import com.chess.engine.ReferenceValidator;
+import com.chess.engine.Squares;
 import com.chess.models.Game;
 import com.chess.models.Move;
-import com.github.bhlangonijr.chesslib.*;
+import com.chess.models.User;
+import com.chess.models.WaitingGame;
 import org.json.JSONObject;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 public class GameService {
+    private static final int MAX_CODE_ATTEMPTS = 5;
+    private static final long MAX_BASE_TIME_MS = 3 * 60 * 60 * 1000L;
+    private static final long MAX_INCREMENT_MS = 60 * 1000L;
+
     private final GameDAO gameDAO;
     private final MoveDAO moveDAO;
     private final UserDAO userDAO;
-    private final Random random = new Random();
+    private final GameExecutor executor;
+    private final MoveJournal journal;
+    private final RatingService ratings;
+    private final LiveGameRegistry liveGames;
+    private final GameCodeAllocator codes;
+    private final WaitingGamesIndex waitingGames;
+    private final TimerWheel timers;
+    private final long disconnectTimeoutMs;
+    private final long matchTimeBaseMs;
+    private final long matchTimeIncrementMs;
+    private volatile GameEventListener eventListener;
 
     public GameService(GameDAO gameDAO, MoveDAO moveDAO, UserDAO userDAO) {
         this.gameDAO = gameDAO;
         this.moveDAO = moveDAO;
         this.userDAO = userDAO;
+        this.executor = new GameExecutor(ServerConfig.getInstance().getInt("games.executor.stripes",
+                Runtime.getRuntime().availableProcessors()));
+        this.ratings = new RatingService(new RatingDAO());
+        this.journal = new MoveJournal(gameDAO, moveDAO, userDAO, ratings);
+        this.liveGames = new LiveGameRegistry(moveDAO, journal, executor);
+        liveGames.setUnloadListener(this::notifyGameUnloaded);
+        // a dead-lettered write leaves memory ahead of the database; drop the game so it reloads from there
+        journal.setDeadLetterListener(game -> executor.execute(game.getGameCode(), () -> {
+            LiveGame live = liveGames.peek(game.getGameCode());
+            if (live != null) {
+                live.cancelTimers();
+                liveGames.invalidate(game.getGameCode());
+            }
+            journal.discardPending(game.getGameId());
+        }));
+        this.codes = new GameCodeAllocator(new GameCodeDAO());
+        this.waitingGames = new WaitingGamesIndex(code -> executor.execute(code, () -> expireWaitingGame(code)));
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.timers = new TimerWheel("games.timers", config.getLong("games.timers.tick", 10));
+        this.disconnectTimeoutMs = config.getLong("games.disconnect.timeout", 60000);
+        this.matchTimeBaseMs = config.getLong("matchmaking.time.base", 0);
+        this.matchTimeIncrementMs = config.getLong("matchmaking.time.increment", 0);
+    }
+
+    public void setEventListener(GameEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    // Rearms the clocks of timed games that were running when the server stopped.
+    public void resumeClocks() throws SQLException {
+        for (String gameCode : gameDAO.findActiveTimedGameCodes()) {
+            executor.execute(gameCode, () -> {
+                try {
+                    requireLiveGame(gameCode);
+                } catch (Exception e) {
+                    System.err.println("Could not resume clock for game " + gameCode + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // Fills the waiting-games index from the database; after this, lobby reads stay in memory.
+    public void loadWaitingGames() throws SQLException {
+        waitingGames.seed(gameDAO.findWaitingGames());
+    }
+
+    public RatingService getRatings() {
+        return ratings;
+    }
+
+    public WaitingGamesIndex getWaitingGames() {
+        return waitingGames;
     }
 
-    public String createGame(int userId) throws SQLException {
-        String gameCode;
+    public String createGame(int userId, long timeBaseMs, long timeIncrementMs) throws SQLException {
+        if (timeBaseMs < 0 || timeBaseMs > MAX_BASE_TIME_MS || timeIncrementMs < 0 || timeIncrementMs > MAX_INCREMENT_MS
+                || (timeBaseMs == 0 && timeIncrementMs > 0)) {
+            throw new IllegalArgumentException("Invalid time control");
+        }
+
+        User creator = userDAO.findById(userId);
+        if (creator == null) {
+            throw new IllegalArgumentException("User not found");
+        }
 
-        do {
-            gameCode = String.format("%06d", random.nextInt(1000000));
-        } while (gameDAO.gameCodeExists(gameCode));
+        Game game = new Game(null, userId);
+        game.setTimeControl(timeBaseMs, timeIncrementMs);
+        insertWithFreshCode(game);
 
-        Game game = new Game(gameCode, userId);
-        gameDAO.createGame(game);
+        waitingGames.add(new WaitingGame(game.getGameCode(), userId, creator.getUsername(),
+                creator.getRating(), System.currentTimeMillis()));
+        return game.getGameCode();
+    }
 
-        return gameCode;
+    // Creates a game that starts straight away, for players paired by matchmaking.
+    public Game createMatchedGame(int whiteId, String whiteName, int blackId, String blackName) throws SQLException {
+        Game game = new Game(null, whiteId);
+        game.setWhitePlayerName(whiteName);
+        game.setBlackPlayerId(blackId);
+        game.setBlackPlayerName(blackName);
+        game.setStatus(Game.GameStatus.ACTIVE);
+        game.setTimeControl(matchTimeBaseMs, matchTimeIncrementMs);
+        game.setLastMoveAt(LocalDateTime.now());
+
+        insertWithFreshCode(game);
+        LiveGame live = liveGames.register(game, 1);
+        executor.execute(game.getGameCode(), () -> armClock(live));
+        return game;
+    }
+
+    private void insertWithFreshCode(Game game) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            game.setGameCode(codes.next());
+            try {
+                gameDAO.createGame(game);
+                return;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // only codes from before the allocator, or a recycled code seen twice, can clash
+                codes.recordCollision();
+                if (attempt >= MAX_CODE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
     }
 
     public Game getGame(String gameCode) throws SQLException {
-        return gameDAO.findByCode(gameCode);
+        return findGame(gameCode);
+    }
+
+    private Game findGame(String gameCode) throws SQLException {
+        LiveGame live = liveGames.peek(gameCode);
+        if (live != null) {
+            return live.getGame();
+        }
+
+        Game game = gameDAO.findByCode(gameCode);
+        if (game == null) {
+            return null;
+        }
+
+        live = rehydrate(game);
+        return live != null ? live.getGame() : game;
+    }
+
+    private LiveGame requireLiveGame(String gameCode) throws SQLException {
+        LiveGame live = liveGames.peek(gameCode);
+        if (live != null) {
+            return live;
+        }
+
+        Game game = gameDAO.findByCode(gameCode);
+        if (game == null) {
+            throw new IllegalArgumentException("Game not found");
+        }
+
+        live = rehydrate(game);
+        if (live == null) {
+            throw new IllegalArgumentException("Game is not active");
+        }
+        return live;
+    }
+
+    private LiveGame rehydrate(Game game) throws SQLException {
+        LiveGame live = liveGames.rehydrate(game);
+        if (live != null && game.isTimed()) {
+            executor.execute(game.getGameCode(), () -> armClock(live));
+        }
+        return live;
+    }
+
+    // Runs the task on the game's own stripe, after everything already submitted for that game.
+    public void submit(String gameCode, Runnable task) {
+        executor.execute(gameCode, task);
     }
 
     public boolean joinGame(String gameCode, int userId) throws SQLException {
+        return executor.call(gameCode, () -> doJoinGame(gameCode, userId));
+    }
+
+    private boolean doJoinGame(String gameCode, int userId) throws SQLException {
         Game game = gameDAO.findByCode(gameCode);
 
         if (game == null) {
@@ -58,18 +224,43 @@ public class GameService {
 
         game.setBlackPlayerId(userId);
         game.setStatus(Game.GameStatus.ACTIVE);
+        // the first clock starts running now
+        game.setLastMoveAt(LocalDateTime.now());
         gameDAO.updateGame(game);
+        waitingGames.remove(gameCode);
+
+        User black = userDAO.findById(userId);
+        if (black != null) {
+            game.setBlackPlayerName(black.getUsername());
+        }
+        LiveGame live = liveGames.register(game, 1);
+        live.startTurn();
+        armClock(live);
+        notifyGameStarted(game);
 
         return true;
     }
 
+    private void expireWaitingGame(String gameCode) {
+        try {
+            gameDAO.abandonWaitingGame(gameCode);
+            // either it is abandoned now or someone joined it first; it is not waiting any more
+            waitingGames.remove(gameCode);
+        } catch (SQLException e) {
+            System.err.println("Could not abandon waiting game " + gameCode + ": " + e.getMessage());
+        }
+    }
+
     public Game makeMove(String gameCode, int userId, String from, String to, String promotion)
             throws SQLException {
+        return executor.call(gameCode, () -> doMakeMove(gameCode, userId, from, to, promotion));
+    }
 
-        Game game = gameDAO.findByCode(gameCode);
-        if (game == null) {
-            throw new IllegalArgumentException("Game not found");
-        }
+    private Game doMakeMove(String gameCode, int userId, String from, String to, String promotion)
+            throws SQLException {
+
+        LiveGame live = requireLiveGame(gameCode);
+        Game game = live.getGame();
 
         if (game.getStatus() != Game.GameStatus.ACTIVE) {
             throw new IllegalArgumentException("Game is not active");
@@ -86,134 +277,311 @@ public class GameService {
             throw new IllegalArgumentException("Not your turn");
         }
 
+        long remainingMs = game.isTimed() ? remainingMs(live) : 0;
+        if (game.isTimed() && remainingMs <= 0) {
+            // the flag timer has not got here yet, but the move came too late all the same
+            finishOnTime(live);
+            throw new IllegalArgumentException("Invalid move: Time forfeit");
+        }
+
         if (from == null || to == null || from.length() != 2 || to.length() != 2) {
             throw new IllegalArgumentException("Invalid squares: from=" + from + " to=" + to);
         }
 
-        Board board = new Board();
-        board.loadFromFen(game.getFenPosition());
+        Position position = live.getPosition();
 
-        String uciMove = from.toLowerCase() + to.toLowerCase();
-        if (promotion != null && !promotion.isEmpty()) {
-            uciMove += promotion.toLowerCase();
+        int fromSquare = Squares.parse(from);
+        int toSquare = Squares.parse(to);
+        if (fromSquare == Squares.NONE || toSquare == Squares.NONE) {
+            throw new IllegalArgumentException("Invalid squares: from=" + from + " to=" + to);
         }
 
-        try {
-            boolean moved = board.doMove(uciMove);
-            if (!moved) {
-                throw new IllegalArgumentException("Illegal move");
+        int promotionType = 0;
+        if (promotion != null && !promotion.isEmpty()) {
+            promotionType = promotion.length() == 1 ? Pieces.typeFromSymbol(promotion.charAt(0)) : -1;
+            if (promotionType <= Pieces.PAWN || promotionType == Pieces.KING) {
+                throw new IllegalArgumentException("Invalid move: Invalid promotion piece: " + promotion);
             }
+        }
 
-            Square fromSquare = Square.fromValue(from.toUpperCase());
-            Square toSquare = Square.fromValue(to.toUpperCase());
-            Piece promoPiece = Piece.NONE;
-            if (promotion != null && !promotion.isEmpty()) {
-                promoPiece = Piece.fromFenSymbol(promotion.toLowerCase());
-            }
+        int move = position.findLegalMove(fromSquare, toSquare, promotionType);
+        ReferenceValidator reference = ReferenceValidator.getInstance();
+        String fenBefore = reference.isEnabled() ? position.toFen() : null;
 
-            com.github.bhlangonijr.chesslib.move.Move move =
-                    new com.github.bhlangonijr.chesslib.move.Move(fromSquare, toSquare, promoPiece);
+        if (move == Moves.NONE) {
+            reference.check(fenBefore, uci(from, to, promotion), null);
+            throw new IllegalArgumentException("Invalid move: Illegal move");
+        }
 
-            game.setFenPosition(board.getFen());
+        journal.reserve();
+        boolean applied = false;
+        boolean journaled = false;
+        try {
+            // the move record needs the pre-move board for its piece, capture and SAN
+            Move dbMove = buildMove(game, live.takeNextMoveNumber(), move, position);
+
+            position.applyMove(move);
+            applied = true;
+
+            game.setFenPosition(position.toFen());
+            if (game.isTimed()) {
+                if (game.getTurn().equals("WHITE")) {
+                    game.setWhiteTimeMs(remainingMs + game.getTimeIncrementMs());
+                } else {
+                    game.setBlackTimeMs(remainingMs + game.getTimeIncrementMs());
+                }
+            }
             game.setTurn(game.getTurn().equals("WHITE") ? "BLACK" : "WHITE");
+            live.startTurn();
             game.setLastMoveAt(LocalDateTime.now());
+            reference.check(fenBefore, Moves.toUci(move), game.getFenPosition());
 
-            handleGameEnd(board, game);
+            handleGameEnd(position, game);
+            boolean finished = game.getStatus() == Game.GameStatus.FINISHED;
 
-            saveMoveToDatabase(game, from, to, promotion, move, board);
-            gameDAO.updateGame(game);
+            journal.append(dbMove, game, finished);
+            journaled = true;
+            live.setLastMove(dbMove);
+
+            if (finished) {
+                live.markFinished();
+                live.cancelTimers();
+            } else {
+                armClock(live);
+            }
 
             return game;
 
         } catch (Exception e) {
+            if (applied) {
+                // memory ran ahead of the journal; reload the game on its next access
+                live.cancelTimers();
+                liveGames.invalidate(gameCode);
+            }
             throw new IllegalArgumentException("Invalid move: " + e.getMessage());
+        } finally {
+            if (!journaled) {
+                journal.cancelReservation();
+            }
         }
     }
 
+    private static String uci(String from, String to, String promotion) {
+        String uci = from.toLowerCase() + to.toLowerCase();
+        return promotion != null ? uci + promotion.toLowerCase() : uci;
+    }
 
-    private void handleGameEnd(Board board, Game game) throws SQLException {
-        if (board.isMated()) {
+    private void handleGameEnd(Position position, Game game) {
+        if (position.isCheckmate()) {
             game.setStatus(Game.GameStatus.FINISHED);
             game.setResult(game.getTurn().equals("WHITE") ?
                     Game.GameResult.BLACK_WIN : Game.GameResult.WHITE_WIN);
-
-            updatePlayerStats(game);
-        } else if (board.isDraw() || board.isStaleMate() || board.isInsufficientMaterial()) {
+        } else if (position.isStalemate() || position.isFiftyMoveDraw() || position.isInsufficientMaterial()
+                || position.isThreefoldRepetition()) {
             game.setStatus(Game.GameStatus.FINISHED);
             game.setResult(Game.GameResult.DRAW);
+        }
+    }
+
+    private Move buildMove(Game game, int moveNumber, int move, Position position) {
+        int from = Moves.from(move);
+        int to = Moves.to(move);
 
-            updatePlayerStatsForDraw(game);
+        Move dbMove = new Move();
+        dbMove.setGameId(game.getGameId());
+        dbMove.setMoveNumber(moveNumber);
+        dbMove.setFromSquare(Squares.name(from));
+        dbMove.setToSquare(Squares.name(to));
+        dbMove.setPiece(String.valueOf(Pieces.fenSymbol(position.pieceAt(from))));
+        dbMove.setSanNotation(position.toSan(move));
+
+        int captured = Moves.flag(move) == Moves.FLAG_EN_PASSANT
+                ? position.pieceAt(Squares.of(Squares.file(to), Squares.rank(from)))
+                : position.pieceAt(to);
+        if (captured != Pieces.EMPTY) {
+            dbMove.setCapturedPiece(String.valueOf(Pieces.fenSymbol(captured)));
         }
+
+        if (Moves.flag(move) == Moves.FLAG_PROMOTION) {
+            dbMove.setPromotion(String.valueOf(Pieces.typeSymbol(Moves.promotionType(move))));
+        }
+
+        return dbMove;
     }
 
-    private void updatePlayerStats(Game game) throws SQLException {
-        if (game.getResult() == Game.GameResult.WHITE_WIN) {
-            userDAO.updateStats(game.getWhitePlayerId(), "WIN");
-            userDAO.updateStats(game.getBlackPlayerId(), "LOSS");
-        } else if (game.getResult() == Game.GameResult.BLACK_WIN) {
-            userDAO.updateStats(game.getWhitePlayerId(), "LOSS");
-            userDAO.updateStats(game.getBlackPlayerId(), "WIN");
+    public void resignGame(String gameCode, int userId) throws SQLException {
+        executor.call(gameCode, () -> {
+            doResignGame(gameCode, userId);
+            return null;
+        });
+    }
+
+    private void doResignGame(String gameCode, int userId) throws SQLException {
+        LiveGame live = requireLiveGame(gameCode);
+        Game game = live.getGame();
+
+        if (!game.isWhite(userId) && !game.isBlack(userId)) {
+            throw new IllegalArgumentException("You are not a player in this game");
         }
+
+        if (game.getStatus() != Game.GameStatus.ACTIVE) {
+            throw new IllegalArgumentException("Game is not active");
+        }
+
+        finishGame(live, game.isWhite(userId) ? Game.GameResult.BLACK_WIN : Game.GameResult.WHITE_WIN);
     }
 
-    private void updatePlayerStatsForDraw(Game game) throws SQLException {
-        userDAO.updateStats(game.getWhitePlayerId(), "DRAW");
-        userDAO.updateStats(game.getBlackPlayerId(), "DRAW");
+    private void finishGame(LiveGame live, Game.GameResult result) {
+        Game game = live.getGame();
+
+        journal.reserve();
+        if (game.isTimed() && game.getStatus() == Game.GameStatus.ACTIVE) {
+            // keep the time the side to move had left when the game ended
+            long remaining = Math.max(0, remainingMs(live));
+            if (game.getTurn().equals("WHITE")) {
+                game.setWhiteTimeMs(Math.min(game.getWhiteTimeMs(), remaining));
+            } else {
+                game.setBlackTimeMs(Math.min(game.getBlackTimeMs(), remaining));
+            }
+        }
+        game.setStatus(Game.GameStatus.FINISHED);
+        game.setResult(result);
+        // rating periods pick games up by when they ended
+        game.setLastMoveAt(LocalDateTime.now());
+
+        journal.append(null, game, true);
+        live.markFinished();
+        live.cancelTimers();
     }
 
-    private void saveMoveToDatabase(Game game, String from, String to, String promotion,
-                                    com.github.bhlangonijr.chesslib.move.Move move, Board board)
-            throws SQLException {
-        Move dbMove = new Move();
-        dbMove.setGameId(game.getGameId());
-        dbMove.setMoveNumber(moveDAO.getNextMoveNumber(game.getGameId()));
-        dbMove.setFromSquare(from);
-        dbMove.setToSquare(to);
+    // Time left for the side to move: what it had when its turn began, less the time since on the
+    // monotonic clock. Only the remaining time is stored, so a game reloaded from the database starts
+    // the turn over from it; last_move_at is for display and rating periods, never for the clock.
+    private static long remainingMs(LiveGame live) {
+        Game game = live.getGame();
+        long stored = game.getTurn().equals("WHITE") ? game.getWhiteTimeMs() : game.getBlackTimeMs();
+        return stored - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - live.getTurnStartedNanos());
+    }
 
-        Square toSquare = Square.fromValue(to.toUpperCase());
-        Piece piece = board.getPiece(toSquare);
-        dbMove.setPiece(piece.getFenSymbol());
-        dbMove.setSanNotation(move.getSan());
+    // Schedules the flag for the side to move. Must run on the game's stripe.
+    private void armClock(LiveGame live) {
+        Game game = live.getGame();
+        if (live.getClockTimeout() != null) {
+            live.getClockTimeout().cancel();
+            live.setClockTimeout(null);
+        }
+        if (!game.isTimed() || game.getStatus() != Game.GameStatus.ACTIVE) {
+            return;
+        }
 
-        Piece capturedPiece = board.getPiece(move.getTo());
-        if (capturedPiece != Piece.NONE) {
-            dbMove.setCapturedPiece(capturedPiece.getFenSymbol());
+        String gameCode = game.getGameCode();
+        live.setClockTimeout(timers.schedule(() -> executor.execute(gameCode, () -> handleFlag(gameCode)),
+                Math.max(0, remainingMs(live))));
+    }
+
+    private void handleFlag(String gameCode) {
+        try {
+            LiveGame live = requireLiveGame(gameCode);
+            Game game = live.getGame();
+            // a timer from before the last move, or from an evicted copy of the game, finds time left and does nothing
+            if (game.getStatus() != Game.GameStatus.ACTIVE || !game.isTimed() || remainingMs(live) > 0) {
+                return;
+            }
+            finishOnTime(live);
+        } catch (Exception e) {
+            System.err.println("Flag check for game " + gameCode + " failed: " + e.getMessage());
         }
+    }
 
-        if (promotion != null && !promotion.isEmpty()) {
-            dbMove.setPromotion(promotion.toLowerCase());
+    private void finishOnTime(LiveGame live) {
+        Game game = live.getGame();
+        boolean whiteFlagged = game.getTurn().equals("WHITE");
+        if (whiteFlagged) {
+            game.setWhiteTimeMs(0);
+        } else {
+            game.setBlackTimeMs(0);
         }
 
-        moveDAO.saveMove(dbMove);
+        finishGame(live, whiteFlagged ? Game.GameResult.BLACK_WIN : Game.GameResult.WHITE_WIN);
+        notifyGameEnded(game, "Time forfeit");
     }
 
-    public void resignGame(String gameCode, int userId) throws SQLException {
-        Game game = gameDAO.findByCode(gameCode);
+    // A player's last connection to the game closed; they forfeit unless they come back in time.
+    public void playerDisconnected(String gameCode, int userId) {
+        executor.execute(gameCode, () -> {
+            LiveGame live = liveGames.peek(gameCode);
+            if (live == null || live.getGame().getStatus() != Game.GameStatus.ACTIVE) {
+                return;
+            }
 
-        if (game == null) {
-            throw new IllegalArgumentException("Game not found");
+            int side = sideOf(live.getGame(), userId);
+            if (side < 0 || live.getAbandonTimeout(side) != null) {
+                return;
+            }
+            live.setAbandonTimeout(side, timers.schedule(
+                    () -> executor.execute(gameCode, () -> handleAbandon(gameCode, side)), disconnectTimeoutMs));
+        });
+    }
+
+    public void playerConnected(String gameCode, int userId) {
+        executor.execute(gameCode, () -> {
+            LiveGame live = liveGames.peek(gameCode);
+            int side = live != null ? sideOf(live.getGame(), userId) : -1;
+            if (side < 0 || live.getAbandonTimeout(side) == null) {
+                return;
+            }
+            live.getAbandonTimeout(side).cancel();
+            live.setAbandonTimeout(side, null);
+        });
+    }
+
+    private void handleAbandon(String gameCode, int side) {
+        LiveGame live = liveGames.peek(gameCode);
+        if (live == null || live.getAbandonTimeout(side) == null || live.getAbandonTimeout(side).isCancelled()) {
+            return;
         }
+        live.setAbandonTimeout(side, null);
 
-        if (!game.isWhite(userId) && !game.isBlack(userId)) {
-            throw new IllegalArgumentException("You are not a player in this game");
+        Game game = live.getGame();
+        if (game.getStatus() != Game.GameStatus.ACTIVE) {
+            return;
         }
 
-        game.setStatus(Game.GameStatus.FINISHED);
+        try {
+            finishGame(live, side == 0 ? Game.GameResult.BLACK_WIN : Game.GameResult.WHITE_WIN);
+            notifyGameEnded(game, "Opponent left the game");
+        } catch (Exception e) {
+            System.err.println("Could not abandon game " + gameCode + ": " + e.getMessage());
+        }
+    }
 
-        if (game.isWhite(userId)) {
-            game.setResult(Game.GameResult.BLACK_WIN);
-            userDAO.updateStats(game.getWhitePlayerId(), "LOSS");
-            userDAO.updateStats(game.getBlackPlayerId(), "WIN");
-        } else {
-            game.setResult(Game.GameResult.WHITE_WIN);
-            userDAO.updateStats(game.getWhitePlayerId(), "WIN");
-            userDAO.updateStats(game.getBlackPlayerId(), "LOSS");
+    private static int sideOf(Game game, int userId) {
+        return game.isWhite(userId) ? 0 : game.isBlack(userId) ? 1 : -1;
+    }
+
+    private void notifyGameStarted(Game game) {
+        GameEventListener listener = eventListener;
+        if (listener != null) {
+            listener.onGameStarted(game);
         }
+    }
 
-        gameDAO.updateGame(game);
+    private void notifyGameEnded(Game game, String reason) {
+        GameEventListener listener = eventListener;
+        if (listener != null) {
+            listener.onGameEnded(game, reason);
+        }
     }
+
+    private void notifyGameUnloaded(String gameCode) {
+        GameEventListener listener = eventListener;
+        if (listener != null) {
+            listener.onGameUnloaded(gameCode);
+        }
+    }
+
     public String getWinnerName(String gameCode) throws SQLException {
-        Game game = gameDAO.findByCode(gameCode);
+        Game game = findGame(gameCode);
 
         if (game == null) {
             throw new IllegalArgumentException("Game not found");
@@ -232,7 +600,7 @@ public class GameService {
     }
 
     public String getLoserName(String gameCode) throws SQLException {
-        Game game = gameDAO.findByCode(gameCode);
+        Game game = findGame(gameCode);
         if (game == null) {
             throw new IllegalArgumentException("Game not found");
         }
@@ -248,8 +616,14 @@ public class GameService {
         return "";
     }
 
+    // The move just made in a live game, or null if the game has left memory. Call on the game's stripe.
+    public Move getLastMove(String gameCode) {
+        LiveGame live = liveGames.peek(gameCode);
+        return live != null ? live.getLastMove() : null;
+    }
+
     public JSONObject getGameState(String gameCode) throws SQLException {
-        Game game = gameDAO.findByCode(gameCode);
+        Game game = findGame(gameCode);
 
         if (game == null) {
             return null;
@@ -267,10 +641,32 @@ public class GameService {
             gameState.put("result", game.getResult().toString());
         }
 
+        if (game.isTimed()) {
+            boolean running = game.getStatus() == Game.GameStatus.ACTIVE;
+            boolean whiteToMove = game.getTurn().equals("WHITE");
+            LiveGame live = running ? liveGames.peek(gameCode) : null;
+            JSONObject clock = new JSONObject();
+            clock.put("whiteMs", live != null && whiteToMove ? Math.max(0, remainingMs(live)) : game.getWhiteTimeMs());
+            clock.put("blackMs", live != null && !whiteToMove ? Math.max(0, remainingMs(live)) : game.getBlackTimeMs());
+            clock.put("incrementMs", game.getTimeIncrementMs());
+            clock.put("running", running);
+            gameState.put("clock", clock);
+        }
+
         return gameState;
     }
 
     public List<Game> listGamesForUser(int userId) throws SQLException {
         return gameDAO.findByUser(userId);
     }
+
+    public void shutdown() {
+        timers.shutdown();
+        executor.shutdown();
+        liveGames.shutdown();
+        journal.shutdown();
+        ratings.shutdown();
+        codes.shutdown();
+        waitingGames.shutdown();
+    }
 }
\ No newline at end of file
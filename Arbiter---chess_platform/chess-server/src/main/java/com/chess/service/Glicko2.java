@@ -0,0 +1,116 @@
+package com.chess.service;
+
+import com.chess.models.Rating;
+
+// Glicko-2 as described by Glickman: ratings carry a deviation (how sure we are) and a volatility
+// (how erratic the player is). Ratings are stored on the familiar Elo-like scale and converted to
+// the internal Glicko-2 scale only while computing.
+public class Glicko2 {
+    public static final double SCALE = 173.7178;
+    public static final double CENTER = 1500;
+    public static final double DEFAULT_DEVIATION = 350;
+    public static final double DEFAULT_VOLATILITY = 0.06;
+
+    private static final double EPSILON = 0.000001;
+    private static final int MAX_ITERATIONS = 100;
+
+    private final double tau;
+    private final double minDeviation;
+    private final double maxDeviation;
+
+    public Glicko2(double tau, double minDeviation, double maxDeviation) {
+        this.tau = tau;
+        this.minDeviation = minDeviation;
+        this.maxDeviation = maxDeviation;
+    }
+
+    // One rating period for one player. Opponents are taken at their pre-period ratings; scores are
+    // 1 for a win, 0.5 for a draw and 0 for a loss. Only the first count entries are read.
+    public Rating rate(Rating player, Rating[] opponents, double[] scores, int count) {
+        if (count == 0) {
+            return idle(player);
+        }
+
+        double mu = (player.getRating() - CENTER) / SCALE;
+        double phi = player.getDeviation() / SCALE;
+
+        double varianceInverse = 0;
+        double improvement = 0;
+        for (int i = 0; i < count; i++) {
+            double opponentMu = (opponents[i].getRating() - CENTER) / SCALE;
+            double g = g(opponents[i].getDeviation() / SCALE);
+            double expected = 1 / (1 + Math.exp(-g * (mu - opponentMu)));
+            varianceInverse += g * g * expected * (1 - expected);
+            improvement += g * (scores[i] - expected);
+        }
+        double v = 1 / varianceInverse;
+        double delta = v * improvement;
+
+        double sigma = volatility(phi, player.getVolatility(), v, delta);
+        double phiStar = Math.sqrt(phi * phi + sigma * sigma);
+        double newPhi = 1 / Math.sqrt(1 / (phiStar * phiStar) + 1 / v);
+        double newMu = mu + newPhi * newPhi * improvement;
+
+        return new Rating(newMu * SCALE + CENTER, clamp(newPhi * SCALE), sigma);
+    }
+
+    // A period without games: the rating stays put but we grow less sure of it.
+    public Rating idle(Rating player) {
+        double phi = player.getDeviation() / SCALE;
+        double grown = Math.sqrt(phi * phi + player.getVolatility() * player.getVolatility()) * SCALE;
+        return new Rating(player.getRating(), clamp(grown), player.getVolatility());
+    }
+
+    public Rating rateGame(Rating player, Rating opponent, double score) {
+        return rate(player, new Rating[] {opponent}, new double[] {score}, 1);
+    }
+
+    private double volatility(double phi, double sigma, double v, double delta) {
+        // Illinois variant of regula falsi on f(x), where x = ln(sigma'^2)
+        double a = Math.log(sigma * sigma);
+        double phiSquared = phi * phi;
+        double deltaSquared = delta * delta;
+
+        double lower = a;
+        double upper;
+        if (deltaSquared > phiSquared + v) {
+            upper = Math.log(deltaSquared - phiSquared - v);
+        } else {
+            int k = 1;
+            while (f(a - k * tau, a, phiSquared, v, deltaSquared) < 0 && k < MAX_ITERATIONS) {
+                k++;
+            }
+            upper = a - k * tau;
+        }
+
+        double fLower = f(lower, a, phiSquared, v, deltaSquared);
+        double fUpper = f(upper, a, phiSquared, v, deltaSquared);
+        for (int i = 0; i < MAX_ITERATIONS && Math.abs(upper - lower) > EPSILON; i++) {
+            double c = lower + (lower - upper) * fLower / (fUpper - fLower);
+            double fC = f(c, a, phiSquared, v, deltaSquared);
+            if (fC * fUpper <= 0) {
+                lower = upper;
+                fLower = fUpper;
+            } else {
+                fLower /= 2;
+            }
+            upper = c;
+            fUpper = fC;
+        }
+        return Math.exp(lower / 2);
+    }
+
+    private double f(double x, double a, double phiSquared, double v, double deltaSquared) {
+        double ex = Math.exp(x);
+        double denominator = phiSquared + v + ex;
+        return ex * (deltaSquared - phiSquared - v - ex) / (2 * denominator * denominator) - (x - a) / (tau * tau);
+    }
+
+    private static double g(double phi) {
+        return 1 / Math.sqrt(1 + 3 * phi * phi / (Math.PI * Math.PI));
+    }
+
+    private double clamp(double deviation) {
+        return Math.max(minDeviation, Math.min(maxDeviation, deviation));
+    }
+}
@@ -0,0 +1,312 @@
+package com.chess.service;
+
+import com.chess.metrics.MetricsRegistry;
+import com.chess.models.Rating;
+import com.chess.models.User;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// All players ordered by rating, highest first, ties broken by user id. The order lives in a treap
+// whose nodes count their subtree, so top-N, rank-of and around-me are all O(log n) plus the rows
+// returned. Seeded once from the database and kept current from rating commits.
+public class LeaderboardIndex {
+    private static final int MAX_PAGE = 100;
+
+    private static final class Node {
+        final int userId;
+        final String username;
+        final int rating;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(int userId, String username, int rating) {
+            this.userId = userId;
+            this.username = username;
+            this.rating = rating;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, Node> byUser = new HashMap<>();
+    private Node root;
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    public LeaderboardIndex() {
+        MetricsRegistry.getInstance().register("leaderboard", this::getMetrics);
+    }
+
+    public void seed(List<User> users) {
+        lock.writeLock().lock();
+        try {
+            for (User user : users) {
+                upsert(user.getUserId(), user.getUsername(), user.getRating());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int userId, String username, int rating) {
+        lock.writeLock().lock();
+        try {
+            upsert(userId, username, rating);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        updates.increment();
+    }
+
+    // Fed with committed ratings; players the index has never seen are skipped until the next seed.
+    public void updateRatings(Map<Integer, Rating> ratings) {
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<Integer, Rating> entry : ratings.entrySet()) {
+                Node node = byUser.get(entry.getKey());
+                int rating = (int) Math.round(entry.getValue().getRating());
+                if (node != null && node.rating != rating) {
+                    upsert(node.userId, node.username, rating);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        updates.add(ratings.size());
+    }
+
+    public JSONObject top(int offset, int limit) {
+        queries.increment();
+        lock.readLock().lock();
+        try {
+            int from = Math.max(0, offset);
+            return page(from, clampLimit(limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The player with radius neighbours on each side, or null if the player is not ranked.
+    public JSONObject around(int userId, int radius) {
+        queries.increment();
+        lock.readLock().lock();
+        try {
+            Node node = byUser.get(userId);
+            if (node == null) {
+                return null;
+            }
+            int index = indexOf(node.rating, node.userId);
+            int reach = Math.max(0, Math.min(radius, MAX_PAGE / 2));
+            int from = Math.max(0, index - reach);
+
+            JSONObject page = page(from, index - from + reach + 1);
+            page.put("rank", index + 1);
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public JSONObject rankOf(int userId) {
+        queries.increment();
+        lock.readLock().lock();
+        try {
+            Node node = byUser.get(userId);
+            if (node == null) {
+                return null;
+            }
+            JSONObject json = toJson(node, indexOf(node.rating, node.userId) + 1);
+            json.put("total", size(root));
+            return json;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private JSONObject page(int from, int limit) {
+        List<Node> nodes = new ArrayList<>(limit);
+        collect(root, from, limit, nodes);
+
+        JSONArray players = new JSONArray();
+        for (int i = 0; i < nodes.size(); i++) {
+            players.put(toJson(nodes.get(i), from + i + 1));
+        }
+
+        JSONObject page = new JSONObject();
+        page.put("players", players);
+        page.put("offset", from);
+        page.put("total", size(root));
+        return page;
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_PAGE));
+    }
+
+    private void upsert(int userId, String username, int rating) {
+        Node existing = byUser.get(userId);
+        if (existing != null) {
+            root = remove(root, existing.rating, existing.userId);
+        }
+        Node node = new Node(userId, username, rating);
+        root = insert(root, node);
+        byUser.put(userId, node);
+    }
+
+    // negative when (ratingA, idA) ranks above (ratingB, idB)
+    private static int compare(int ratingA, int idA, int ratingB, int idB) {
+        if (ratingA != ratingB) {
+            return Integer.compare(ratingB, ratingA);
+        }
+        return Integer.compare(idA, idB);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static Node insert(Node tree, Node node) {
+        if (tree == null) {
+            return node;
+        }
+        if (node.priority > tree.priority) {
+            Node[] halves = split(tree, node.rating, node.userId);
+            node.left = halves[0];
+            node.right = halves[1];
+            update(node);
+            return node;
+        }
+        if (compare(node.rating, node.userId, tree.rating, tree.userId) < 0) {
+            tree.left = insert(tree.left, node);
+        } else {
+            tree.right = insert(tree.right, node);
+        }
+        update(tree);
+        return tree;
+    }
+
+    private static Node remove(Node tree, int rating, int userId) {
+        if (tree == null) {
+            return null;
+        }
+        int cmp = compare(rating, userId, tree.rating, tree.userId);
+        if (cmp == 0) {
+            return merge(tree.left, tree.right);
+        }
+        if (cmp < 0) {
+            tree.left = remove(tree.left, rating, userId);
+        } else {
+            tree.right = remove(tree.right, rating, userId);
+        }
+        update(tree);
+        return tree;
+    }
+
+    // [0] holds the nodes ranked above the key, [1] the rest
+    private static Node[] split(Node tree, int rating, int userId) {
+        if (tree == null) {
+            return new Node[2];
+        }
+        if (compare(tree.rating, tree.userId, rating, userId) < 0) {
+            Node[] halves = split(tree.right, rating, userId);
+            tree.right = halves[0];
+            update(tree);
+            halves[0] = tree;
+            return halves;
+        }
+        Node[] halves = split(tree.left, rating, userId);
+        tree.left = halves[1];
+        update(tree);
+        halves[1] = tree;
+        return halves;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    // zero-based position of an entry that is in the tree
+    private int indexOf(int rating, int userId) {
+        int index = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = compare(rating, userId, node.rating, node.userId);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return index;
+    }
+
+    // in-order walk that skips whole subtrees before offset and stops once limit nodes are collected
+    private static void collect(Node node, int offset, int limit, List<Node> out) {
+        if (node == null || out.size() >= limit) {
+            return;
+        }
+        int leftSize = size(node.left);
+        if (offset < leftSize) {
+            collect(node.left, offset, limit, out);
+        }
+        if (out.size() >= limit) {
+            return;
+        }
+        if (offset <= leftSize) {
+            out.add(node);
+        }
+        collect(node.right, Math.max(0, offset - leftSize - 1), limit, out);
+    }
+
+    private static JSONObject toJson(Node node, int rank) {
+        JSONObject json = new JSONObject();
+        json.put("rank", rank);
+        json.put("userId", node.userId);
+        json.put("username", node.username);
+        json.put("rating", node.rating);
+        return json;
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        lock.readLock().lock();
+        try {
+            metrics.put("size", size(root));
+        } finally {
+            lock.readLock().unlock();
+        }
+        metrics.put("updates", updates.sum());
+        metrics.put("queries", queries.sum());
+        return metrics;
+    }
+}
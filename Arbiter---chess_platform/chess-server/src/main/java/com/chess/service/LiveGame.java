@@ -0,0 +1,74 @@
+package com.chess.service;
+
+import com.chess.models.Game;
+import com.chess.models.Move;
+import com.chess.engine.Position;
+
+public class LiveGame {
+    private final Game game;
+    private final Position position;
+    private int nextMoveNumber;
+    private volatile long lastAccessAt;
+    private volatile long finishedAt;
+    // when the side to move began its turn, on the monotonic clock so wall clock jumps cannot move it
+    private volatile long turnStartedNanos;
+
+    // only touched on the game's executor stripe
+    private TimerWheel.Timeout clockTimeout;
+    private final TimerWheel.Timeout[] abandonTimeouts = new TimerWheel.Timeout[2];
+    private Move lastMove;
+
+    public LiveGame(Game game, Position position, int nextMoveNumber) {
+        this.game = game;
+        this.position = position;
+        this.nextMoveNumber = nextMoveNumber;
+        this.lastAccessAt = System.currentTimeMillis();
+        this.turnStartedNanos = System.nanoTime();
+    }
+
+    public Game getGame() { return game; }
+
+    public Position getPosition() { return position; }
+
+    public int takeNextMoveNumber() { return nextMoveNumber++; }
+
+    public long getLastAccessAt() { return lastAccessAt; }
+
+    public void touch() { lastAccessAt = System.currentTimeMillis(); }
+
+    public long getFinishedAt() { return finishedAt; }
+
+    public void markFinished() { finishedAt = System.currentTimeMillis(); }
+
+    public boolean isFinished() { return finishedAt > 0; }
+
+    public long getTurnStartedNanos() { return turnStartedNanos; }
+
+    public void startTurn() { turnStartedNanos = System.nanoTime(); }
+
+    public Move getLastMove() { return lastMove; }
+
+    public void setLastMove(Move lastMove) { this.lastMove = lastMove; }
+
+    public TimerWheel.Timeout getClockTimeout() { return clockTimeout; }
+
+    public void setClockTimeout(TimerWheel.Timeout clockTimeout) { this.clockTimeout = clockTimeout; }
+
+    // side is 0 for white, 1 for black
+    public TimerWheel.Timeout getAbandonTimeout(int side) { return abandonTimeouts[side]; }
+
+    public void setAbandonTimeout(int side, TimerWheel.Timeout timeout) { abandonTimeouts[side] = timeout; }
+
+    public void cancelTimers() {
+        if (clockTimeout != null) {
+            clockTimeout.cancel();
+            clockTimeout = null;
+        }
+        for (int side = 0; side < abandonTimeouts.length; side++) {
+            if (abandonTimeouts[side] != null) {
+                abandonTimeouts[side].cancel();
+                abandonTimeouts[side] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.dao.MoveDAO;
+import com.chess.engine.Moves;
+import com.chess.engine.Pieces;
+import com.chess.engine.Position;
+import com.chess.engine.Squares;
+import com.chess.metrics.MetricsRegistry;
+import com.chess.models.Game;
+import com.chess.models.Move;
+import org.json.JSONObject;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class LiveGameRegistry {
+    private final MoveDAO moveDAO;
+    private final MoveJournal journal;
+    private final GameExecutor executor;
+    private final Map<String, LiveGame> games = new ConcurrentHashMap<>();
+
+    private final int maxGames;
+    private final long idleTimeoutMs;
+    private final long finishedRetentionMs;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rehydrations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder replayMismatches = new LongAdder();
+
+    private final ScheduledExecutorService sweeper;
+    private volatile Consumer<String> unloadListener = gameCode -> { };
+
+    public LiveGameRegistry(MoveDAO moveDAO, MoveJournal journal, GameExecutor executor) {
+        this.moveDAO = moveDAO;
+        this.journal = journal;
+        this.executor = executor;
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.maxGames = config.getInt("games.live.max", 10000);
+        this.idleTimeoutMs = config.getLong("games.live.idle.timeout", 1800000);
+        this.finishedRetentionMs = config.getLong("games.live.finished.retention", 60000);
+        long sweepInterval = config.getLong("games.live.sweep.interval", 10000);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "live-game-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.getInstance().register("games.live", this::getMetrics);
+    }
+
+    public LiveGame peek(String gameCode) {
+        LiveGame live = games.get(gameCode);
+        if (live == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        live.touch();
+        return live;
+    }
+
+    public LiveGame rehydrate(Game game) throws SQLException {
+        if (game.getStatus() != Game.GameStatus.ACTIVE) {
+            return null;
+        }
+
+        rehydrations.increment();
+        List<Move> moves = moveDAO.getMovesByGameId(game.getGameId());
+        int nextMoveNumber = moves.isEmpty() ? 1 : moves.get(moves.size() - 1).getMoveNumber() + 1;
+        return register(game, replay(game, moves), nextMoveNumber);
+    }
+
+    public LiveGame register(Game game, int nextMoveNumber) {
+        return register(game, new Position(game.getFenPosition()), nextMoveNumber);
+    }
+
+    private LiveGame register(Game game, Position position, int nextMoveNumber) {
+        LiveGame live = new LiveGame(game, position, nextMoveNumber);
+        LiveGame existing = games.putIfAbsent(game.getGameCode(), live);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (games.size() > maxGames) {
+            evictLeastRecentlyUsed();
+        }
+        return live;
+    }
+
+    // Rebuilds the position from the start so its repetition history survives the reload. The stored
+    // FEN stays authoritative: if the move list does not lead to it, the game resumes without history.
+    private Position replay(Game game, List<Move> moves) {
+        Position stored = new Position(game.getFenPosition());
+        Position position = new Position();
+
+        for (Move move : moves) {
+            String promotion = move.getPromotion();
+            int promotionType = promotion == null || promotion.isEmpty() ? 0 : Pieces.typeFromSymbol(promotion.charAt(0));
+            int packed = position.findLegalMove(Squares.parse(move.getFromSquare()),
+                    Squares.parse(move.getToSquare()), promotionType);
+
+            if (packed == Moves.NONE) {
+                return replayMismatch(game, "illegal move " + move.getMoveNumber(), stored);
+            }
+            position.applyMove(packed);
+        }
+
+        if (!position.toFen().equals(stored.toFen())) {
+            return replayMismatch(game, "final position differs", stored);
+        }
+        return position;
+    }
+
+    private Position replayMismatch(Game game, String reason, Position stored) {
+        replayMismatches.increment();
+        System.err.println("Move replay for game " + game.getGameCode() + " failed (" + reason
+                + "), resuming from stored FEN without repetition history");
+        return stored;
+    }
+
+    // Told, on the game's stripe, the code of each game that leaves memory.
+    public void setUnloadListener(Consumer<String> unloadListener) {
+        this.unloadListener = unloadListener;
+    }
+
+    public void invalidate(String gameCode) {
+        if (games.remove(gameCode) != null) {
+            evictions.increment();
+            unloadListener.accept(gameCode);
+        }
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("size", games.size());
+        metrics.put("maxSize", maxGames);
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("rehydrations", rehydrations.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("replayMismatches", replayMismatches.sum());
+        return metrics;
+    }
+
+    // Moves are made on the game's stripe, so the final check and the removal are made there as well;
+    // deciding from the sweeper thread could drop a game between its move and the journal append.
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, LiveGame> entry : games.entrySet()) {
+                String gameCode = entry.getKey();
+                LiveGame live = entry.getValue();
+                if (isExpired(live, now)) {
+                    executor.execute(gameCode, () -> {
+                        if (isExpired(live, System.currentTimeMillis())) {
+                            evict(gameCode, live);
+                        }
+                    });
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Live game sweep failed: " + e.getMessage());
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        // overflow is rare, so take a tenth of the table off in one pass instead of one entry per insert
+        int excess = games.size() - maxGames + Math.max(1, maxGames / 10);
+        // games keep finishing and being touched, so each is read once and sorted on that snapshot
+        List<Candidate> candidates = new ArrayList<>(games.size());
+        for (Map.Entry<String, LiveGame> entry : games.entrySet()) {
+            LiveGame live = entry.getValue();
+            candidates.add(new Candidate(entry.getKey(), live, live.isFinished(), live.getLastAccessAt()));
+        }
+        candidates.sort(Comparator.comparingInt((Candidate c) -> c.finished ? 0 : 1)
+                .thenComparingLong(c -> c.lastAccessAt));
+
+        for (int i = 0; i < excess && i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            executor.execute(candidate.gameCode, () -> {
+                // a game touched since the snapshot is no longer least recently used
+                if (candidate.live.getLastAccessAt() == candidate.lastAccessAt) {
+                    evict(candidate.gameCode, candidate.live);
+                }
+            });
+        }
+    }
+
+    private boolean isExpired(LiveGame live, long now) {
+        boolean finishedExpired = live.isFinished() && now - live.getFinishedAt() > finishedRetentionMs;
+        boolean idleExpired = now - live.getLastAccessAt() > idleTimeoutMs;
+        return finishedExpired || idleExpired;
+    }
+
+    // Runs on the game's stripe. A running clock exists only in memory, so a game whose clock is armed
+    // stays resident rather than restart the turn from its stored time on reload.
+    private void evict(String gameCode, LiveGame live) {
+        if (live.getClockTimeout() == null && !hasPendingWrites(live) && games.remove(gameCode, live)) {
+            evictions.increment();
+            unloadListener.accept(gameCode);
+        }
+    }
+
+    // a game whose writes are still queued must stay resident, or a reload would read stale rows
+    private boolean hasPendingWrites(LiveGame live) {
+        return journal.hasPending(live.getGame().getGameId());
+    }
+
+    private static final class Candidate {
+        private final String gameCode;
+        private final LiveGame live;
+        private final boolean finished;
+        private final long lastAccessAt;
+
+        Candidate(String gameCode, LiveGame live, boolean finished, long lastAccessAt) {
+            this.gameCode = gameCode;
+            this.live = live;
+            this.finished = finished;
+            this.lastAccessAt = lastAccessAt;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import com.chess.models.Game;
+import org.json.JSONObject;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pairs players of similar rating. Waiting tickets sit in lock-free queues bucketed by rating; a
+// ticket's acceptable rating gap widens the longer it waits. Pairing claims both tickets by CAS, so
+// a ticket is matched at most once however many threads are scanning.
+public class MatchmakingService {
+    public interface MatchListener {
+        void onMatched(Game game, String side, String opponent, int opponentRating);
+
+        void onMatchFailed(String reason);
+    }
+
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int MATCHED = 2;
+    private static final int CANCELLED = 3;
+
+    private final GameService gameService;
+    private final int bucketWidth;
+    private final int initialWindow;
+    private final int windowGrowthPerSecond;
+    private final int maxWindow;
+
+    private final Map<Integer, ConcurrentLinkedQueue<Ticket>> buckets = new ConcurrentHashMap<>();
+    private final Map<Integer, Ticket> ticketsByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger ticketIds = new AtomicInteger();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder failedPairings = new LongAdder();
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    private final ScheduledExecutorService matcher;
+
+    public MatchmakingService(GameService gameService) {
+        this.gameService = gameService;
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.bucketWidth = config.getInt("matchmaking.bucket.width", 50);
+        this.initialWindow = config.getInt("matchmaking.window.initial", 50);
+        this.windowGrowthPerSecond = config.getInt("matchmaking.window.growth", 25);
+        this.maxWindow = config.getInt("matchmaking.window.max", 400);
+        long sweepInterval = config.getLong("matchmaking.sweep.interval", 250);
+
+        this.matcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "matchmaker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        matcher.scheduleWithFixedDelay(this::sweep, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.getInstance().register("matchmaking", this::getMetrics);
+    }
+
+    // Queues the player, replacing any ticket they already had, and pairs them straight away if an opponent fits.
+    // Returns false without queueing when the player's previous ticket has already been paired: their game is
+    // still being created, and a second ticket could land them in two games at once.
+    public boolean enqueue(int userId, String username, int rating, MatchListener listener) {
+        Ticket ticket = new Ticket(ticketIds.incrementAndGet(), userId, username, rating, listener);
+
+        // retiring and swapping under the map's lock keeps two enqueues for one user from both winning
+        Ticket current = ticketsByUser.compute(userId, (id, previous) ->
+                previous == null || retire(previous) || previous.state.get() == CANCELLED ? ticket : previous);
+        if (current != ticket) {
+            return false;
+        }
+        enqueued.increment();
+
+        if (!tryMatch(ticket, System.currentTimeMillis())) {
+            bucketFor(ticket.rating).add(ticket);
+            // someone may have queued in between our scan and the add; the sweep will catch it otherwise
+            tryMatch(ticket, System.currentTimeMillis());
+        }
+        return true;
+    }
+
+    public boolean cancel(int userId) {
+        Ticket ticket = ticketsByUser.get(userId);
+        if (ticket == null || !retire(ticket)) {
+            return false;
+        }
+        ticketsByUser.remove(userId, ticket);
+        return true;
+    }
+
+    private boolean retire(Ticket ticket) {
+        // a ticket that is mid-claim either gets matched or goes back to WAITING within a few instructions
+        while (true) {
+            int state = ticket.state.get();
+            if (state == WAITING && ticket.state.compareAndSet(WAITING, CANCELLED)) {
+                cancelled.increment();
+                return true;
+            }
+            if (state == MATCHED || state == CANCELLED) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public boolean isQueued(int userId) {
+        Ticket ticket = ticketsByUser.get(userId);
+        return ticket != null && ticket.state.get() == WAITING;
+    }
+
+    public void shutdown() {
+        matcher.shutdownNow();
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            // oldest tickets have the widest windows, but every waiting ticket gets another look
+            for (Ticket ticket : ticketsByUser.values()) {
+                if (ticket.state.get() == WAITING) {
+                    tryMatch(ticket, now);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Matchmaking sweep failed: " + e.getMessage());
+        }
+    }
+
+    private boolean tryMatch(Ticket ticket, long now) {
+        int window = windowFor(ticket, now);
+        int center = ticket.rating / bucketWidth;
+        int reach = window / bucketWidth + 1;
+
+        // nearest buckets first, so the closest rating wins when several opponents fit
+        for (int distance = 0; distance <= reach; distance++) {
+            if (ticket.state.get() != WAITING) {
+                return false;
+            }
+            if (scanBucket(ticket, center + distance, window, now)
+                    || (distance > 0 && scanBucket(ticket, center - distance, window, now))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean scanBucket(Ticket ticket, int bucket, int window, long now) {
+        ConcurrentLinkedQueue<Ticket> queue = buckets.get(bucket);
+        if (queue == null) {
+            return false;
+        }
+
+        Iterator<Ticket> it = queue.iterator();
+        while (it.hasNext()) {
+            Ticket candidate = it.next();
+            int state = candidate.state.get();
+            if (state == MATCHED || state == CANCELLED) {
+                it.remove();
+                continue;
+            }
+            if (candidate == ticket || state != WAITING || candidate.userId == ticket.userId) {
+                continue;
+            }
+
+            int gap = Math.abs(candidate.rating - ticket.rating);
+            if (gap > window || gap > windowFor(candidate, now)) {
+                continue;
+            }
+
+            if (claim(ticket, candidate)) {
+                pair(ticket, candidate, now);
+                return true;
+            }
+            if (ticket.state.get() != WAITING) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Claims both tickets in id order so two scanners racing over the same pair cannot both half-succeed forever.
+    private boolean claim(Ticket a, Ticket b) {
+        Ticket first = a.id < b.id ? a : b;
+        Ticket second = first == a ? b : a;
+
+        if (!first.state.compareAndSet(WAITING, CLAIMED)) {
+            return false;
+        }
+        if (!second.state.compareAndSet(WAITING, CLAIMED)) {
+            first.state.set(WAITING);
+            return false;
+        }
+        return true;
+    }
+
+    private void pair(Ticket a, Ticket b, long now) {
+        // settle the tickets before touching the database so cancel() never waits on it; they stay
+        // registered until the game exists, so enqueue() can tell the players are already being matched
+        a.state.set(MATCHED);
+        b.state.set(MATCHED);
+
+        boolean aIsWhite = ThreadLocalRandom.current().nextBoolean();
+        Ticket white = aIsWhite ? a : b;
+        Ticket black = aIsWhite ? b : a;
+
+        Game game;
+        try {
+            game = gameService.createMatchedGame(white.userId, white.username, black.userId, black.username);
+        } catch (Exception e) {
+            unregister(a);
+            unregister(b);
+            failedPairings.increment();
+            System.err.println("Creating matched game failed: " + e.getMessage());
+            a.listener.onMatchFailed("Could not create the game, please search again");
+            b.listener.onMatchFailed("Could not create the game, please search again");
+            return;
+        }
+
+        unregister(a);
+        unregister(b);
+        matched.add(2);
+        waitTime.recordNanos(TimeUnit.MILLISECONDS.toNanos(now - a.enqueuedAt));
+        waitTime.recordNanos(TimeUnit.MILLISECONDS.toNanos(now - b.enqueuedAt));
+
+        white.listener.onMatched(game, "WHITE", black.username, black.rating);
+        black.listener.onMatched(game, "BLACK", white.username, white.rating);
+    }
+
+    private void unregister(Ticket ticket) {
+        ticketsByUser.remove(ticket.userId, ticket);
+    }
+
+    private int windowFor(Ticket ticket, long now) {
+        long waitedSeconds = Math.max(0, now - ticket.enqueuedAt) / 1000;
+        return (int) Math.min(maxWindow, initialWindow + waitedSeconds * windowGrowthPerSecond);
+    }
+
+    private ConcurrentLinkedQueue<Ticket> bucketFor(int rating) {
+        return buckets.computeIfAbsent(rating / bucketWidth, b -> new ConcurrentLinkedQueue<>());
+    }
+
+    public JSONObject getMetrics() {
+        long waiting = ticketsByUser.values().stream().filter(t -> t.state.get() == WAITING).count();
+
+        JSONObject metrics = new JSONObject();
+        metrics.put("waiting", waiting);
+        metrics.put("enqueued", enqueued.sum());
+        metrics.put("matched", matched.sum());
+        metrics.put("cancelled", cancelled.sum());
+        metrics.put("failedPairings", failedPairings.sum());
+        metrics.put("waitTime", waitTime.toJson());
+        return metrics;
+    }
+
+    private static final class Ticket {
+        final int id;
+        final int userId;
+        final String username;
+        final int rating;
+        final MatchListener listener;
+        final long enqueuedAt = System.currentTimeMillis();
+        final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Ticket(int id, int userId, String username, int rating, MatchListener listener) {
+            this.id = id;
+            this.userId = userId;
+            this.username = username;
+            this.rating = rating;
+            this.listener = listener;
+        }
+    }
+}
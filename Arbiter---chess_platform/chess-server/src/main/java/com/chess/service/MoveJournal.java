@@ -0,0 +1,458 @@
+package com.chess.service;
+
+import com.chess.config.DatabaseConfig;
+import com.chess.config.ServerConfig;
+import com.chess.dao.GameDAO;
+import com.chess.dao.MoveDAO;
+import com.chess.dao.UserDAO;
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import com.chess.models.Game;
+import com.chess.models.Move;
+import com.chess.models.Rating;
+import org.json.JSONObject;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Write-behind journal for moves and game updates, flushed in group commits by a single thread.
+//
+// A transient failure (the database unreachable, a deadlock) keeps the batch and its permits and is
+// retried until it goes through, so an outage shows up as "Server is busy" rather than lost moves.
+// Only an entry that fails on its own merits is dead-lettered. Its game's later entries are dropped
+// with it and the dead-letter listener is told, so the live game can be reloaded from what the
+// database actually holds instead of running ahead of it.
+public class MoveJournal {
+    // Writes one batch in one transaction.
+    interface BatchWriter {
+        void write(List<Move> moves, Collection<Game> games, Map<String, List<Integer>> statsByResult,
+                   List<Game> finishedGames) throws SQLException;
+    }
+
+    private final BatchWriter writer;
+
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long offerTimeoutMs;
+    private final int shutdownRetries;
+
+    // permits cover queued entries and the batch being flushed, so memory stays bounded end to end
+    private final Semaphore capacityPermits;
+    private final LinkedBlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Map<Integer, Integer> pendingByGame = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // games with a dead-lettered entry: their entries up to this sequence are dropped, not written
+    private final Map<Integer, Long> discardThrough = new ConcurrentHashMap<>();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder movesWritten = new LongAdder();
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    private volatile Consumer<Game> deadLetterListener = game -> { };
+
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public MoveJournal(GameDAO gameDAO, MoveDAO moveDAO, UserDAO userDAO, RatingService ratings) {
+        this(new DatabaseWriter(DatabaseConfig.getInstance(), gameDAO, moveDAO, userDAO, ratings));
+    }
+
+    MoveJournal(BatchWriter writer) {
+        this.writer = writer;
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.capacity = config.getInt("journal.capacity", 10000);
+        this.batchSize = config.getInt("journal.batch.size", 256);
+        this.flushIntervalMs = config.getLong("journal.flush.interval", 20);
+        this.offerTimeoutMs = config.getLong("journal.offer.timeout", 500);
+        this.shutdownRetries = config.getInt("journal.retry.max", 5);
+
+        this.capacityPermits = new Semaphore(capacity);
+
+        this.flusher = new Thread(this::run, "move-journal-flusher");
+        flusher.start();
+
+        MetricsRegistry.getInstance().register("journal", this::getMetrics);
+    }
+
+    // Told, on the flusher thread, about each game whose entry was dead-lettered. The game must be
+    // dropped from memory and discardPending() called for it on the game's stripe.
+    public void setDeadLetterListener(Consumer<Game> listener) {
+        this.deadLetterListener = listener;
+    }
+
+    // Claims room for one entry before the caller mutates any in-memory state,
+    // so a full journal rejects the request instead of losing an accepted move.
+    public void reserve() {
+        if (!running) {
+            throw new IllegalStateException("Server is shutting down");
+        }
+
+        try {
+            if (!capacityPermits.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                throw new IllegalStateException("Server is busy, please retry the move");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the move journal");
+        }
+    }
+
+    public void cancelReservation() {
+        capacityPermits.release();
+    }
+
+    public void append(Move move, Game game, boolean gameFinished) {
+        Entry entry = new Entry(sequence.incrementAndGet(), move, new Game(game), gameFinished);
+        pendingByGame.merge(game.getGameId(), 1, Integer::sum);
+        queue.add(entry);
+        appended.increment();
+    }
+
+    public boolean hasPending(int gameId) {
+        return pendingByGame.containsKey(gameId);
+    }
+
+    // On the game's stripe, once the game has left memory: drops whatever it had queued so far, while
+    // entries from the copy reloaded after this point are written as usual.
+    public void discardPending(int gameId) {
+        long through = sequence.get();
+        discardThrough.put(gameId, through);
+        if (!pendingByGame.containsKey(gameId)) {
+            discardThrough.remove(gameId, through);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!queue.isEmpty()) {
+            System.err.println("Move journal stopped with " + queue.size() + " unflushed entries");
+        }
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("capacity", capacity);
+        metrics.put("depth", capacity - capacityPermits.availablePermits());
+        metrics.put("appended", appended.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("flushes", flushes.sum());
+        metrics.put("flushFailures", flushFailures.sum());
+        metrics.put("deadLettered", deadLettered.sum());
+        metrics.put("discarded", discarded.sum());
+        metrics.put("movesWritten", movesWritten.sum());
+        metrics.put("flushLatency", flushLatency.toJson());
+        return metrics;
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                // the flusher is the only writer, so nothing a batch throws may end the thread
+                try {
+                    flushWithRetry(batch);
+                } catch (RuntimeException e) {
+                    System.err.println("Move journal flusher error: " + e);
+                    release(batch);
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void collectBatch(List<Entry> batch) throws InterruptedException {
+        Entry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        // group commit: keep collecting until the batch is full or the flush window closes
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+
+            Entry next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flushWithRetry(List<Entry> batch) {
+        persist(batch);
+        release(batch);
+    }
+
+    // Transient failures are retried with capped backoff for as long as the server runs. Anything else
+    // is blamed on the batch, which is halved until the failing entry stands alone and is dead-lettered.
+    // The halves go in order, so a game's moves still reach the database in the order they were played.
+    private void persist(List<Entry> batch) {
+        long backoffMs = 100;
+
+        for (int attempt = 1; ; attempt++) {
+            List<Entry> writable = dropDiscarded(batch);
+            if (writable.isEmpty()) {
+                return;
+            }
+
+            try {
+                flush(writable);
+                return;
+            } catch (SQLException | RuntimeException e) {
+                flushFailures.increment();
+                System.err.println("Move journal flush failed (attempt " + attempt + "): " + e.getMessage());
+
+                if (!isTransient(e)) {
+                    if (writable.size() == 1) {
+                        deadLetter(writable.get(0), e);
+                    } else {
+                        int middle = writable.size() / 2;
+                        persist(writable.subList(0, middle));
+                        persist(writable.subList(middle, writable.size()));
+                    }
+                    return;
+                }
+
+                // nothing is waiting for the entries once the server stops, so give up after a few tries
+                if (!running && attempt >= shutdownRetries) {
+                    System.err.println("Abandoning " + writable.size() + " journal entries during shutdown");
+                    for (Entry entry : writable) {
+                        System.err.println("Move journal unflushed at shutdown: " + describe(entry));
+                    }
+                    return;
+                }
+
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException ie) {
+                    running = false;
+                }
+                backoffMs = Math.min(backoffMs * 2, 5000);
+            }
+        }
+    }
+
+    private List<Entry> dropDiscarded(List<Entry> batch) {
+        List<Entry> writable = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            Long through = discardThrough.get(entry.game.getGameId());
+            if (through != null && entry.sequence <= through) {
+                discarded.increment();
+                System.err.println("Move journal dropped entry behind a dead letter: " + describe(entry));
+            } else {
+                writable.add(entry);
+            }
+        }
+        return writable;
+    }
+
+    // The entry is logged in full so an operator can replay it by hand. Everything its game queued after
+    // it is dropped until the game has been reloaded, so no later move lands on top of the gap.
+    private void deadLetter(Entry entry, Exception cause) {
+        deadLettered.increment();
+        System.err.println("Move journal dead letter (" + cause.getMessage() + "): " + describe(entry));
+
+        discardThrough.put(entry.game.getGameId(), Long.MAX_VALUE);
+        try {
+            deadLetterListener.accept(entry.game);
+        } catch (RuntimeException e) {
+            System.err.println("Dead letter listener failed: " + e.getMessage());
+        }
+    }
+
+    private static JSONObject describe(Entry entry) {
+        JSONObject record = new JSONObject();
+        record.put("gameId", entry.game.getGameId());
+        record.put("gameCode", entry.game.getGameCode());
+        record.put("status", entry.game.getStatus());
+        record.put("result", entry.game.getResult());
+        record.put("fen", entry.game.getFenPosition());
+        record.put("gameFinished", entry.gameFinished);
+        if (entry.move != null) {
+            record.put("moveNumber", entry.move.getMoveNumber());
+            record.put("from", entry.move.getFromSquare());
+            record.put("to", entry.move.getToSquare());
+            record.put("piece", entry.move.getPiece());
+            record.put("captured", entry.move.getCapturedPiece());
+            record.put("promotion", entry.move.getPromotion());
+            record.put("san", entry.move.getSanNotation());
+        }
+        return record;
+    }
+
+    private void release(List<Entry> batch) {
+        for (Entry entry : batch) {
+            int gameId = entry.game.getGameId();
+            if (pendingByGame.computeIfPresent(gameId, (id, pending) -> pending > 1 ? pending - 1 : null) == null) {
+                // once discardPending() has run and nothing is left behind it, the mark has done its job
+                Long through = discardThrough.get(gameId);
+                if (through != null && through != Long.MAX_VALUE) {
+                    discardThrough.remove(gameId, through);
+                }
+            }
+        }
+        capacityPermits.release(batch.size());
+    }
+
+    // SQLState class 08 is a connection failure, 40 a rollback such as a deadlock; MariaDB also reports
+    // lock wait timeouts (1205) and deadlocks (1213) by vendor code. DatabaseConfig wraps driver errors,
+    // so the whole cause chain is checked.
+    private static boolean isTransient(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException || t instanceof SQLRecoverableException
+                    || t instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                String state = sql.getSQLState();
+                if (state != null && (state.startsWith("08") || state.startsWith("40"))) {
+                    return true;
+                }
+                if (sql.getErrorCode() == 1205 || sql.getErrorCode() == 1213) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void flush(List<Entry> batch) throws SQLException {
+        long start = System.nanoTime();
+
+        List<Move> moves = new ArrayList<>();
+        // only the newest snapshot of each game needs to reach the games table
+        Map<Integer, Game> latestGames = new LinkedHashMap<>();
+        Map<String, List<Integer>> statsByResult = new LinkedHashMap<>();
+        List<Game> finishedGames = new ArrayList<>();
+
+        for (Entry entry : batch) {
+            if (entry.move != null) {
+                moves.add(entry.move);
+            }
+            latestGames.put(entry.game.getGameId(), entry.game);
+            if (entry.gameFinished) {
+                collectStats(entry.game, statsByResult);
+                finishedGames.add(entry.game);
+            }
+        }
+
+        writer.write(moves, latestGames.values(), statsByResult, finishedGames);
+
+        flushes.increment();
+        movesWritten.add(moves.size());
+        flushLatency.recordNanos(System.nanoTime() - start);
+    }
+
+    private void collectStats(Game game, Map<String, List<Integer>> statsByResult) {
+        if (game.getResult() == Game.GameResult.WHITE_WIN) {
+            addStat(statsByResult, "WIN", game.getWhitePlayerId());
+            addStat(statsByResult, "LOSS", game.getBlackPlayerId());
+        } else if (game.getResult() == Game.GameResult.BLACK_WIN) {
+            addStat(statsByResult, "LOSS", game.getWhitePlayerId());
+            addStat(statsByResult, "WIN", game.getBlackPlayerId());
+        } else if (game.getResult() == Game.GameResult.DRAW) {
+            addStat(statsByResult, "DRAW", game.getWhitePlayerId());
+            addStat(statsByResult, "DRAW", game.getBlackPlayerId());
+        }
+    }
+
+    private void addStat(Map<String, List<Integer>> statsByResult, String result, int userId) {
+        statsByResult.computeIfAbsent(result, k -> new ArrayList<>()).add(userId);
+    }
+
+    private static final class DatabaseWriter implements BatchWriter {
+        private final DatabaseConfig dbConfig;
+        private final GameDAO gameDAO;
+        private final MoveDAO moveDAO;
+        private final UserDAO userDAO;
+        private final RatingService ratings;
+
+        DatabaseWriter(DatabaseConfig dbConfig, GameDAO gameDAO, MoveDAO moveDAO, UserDAO userDAO,
+                       RatingService ratings) {
+            this.dbConfig = dbConfig;
+            this.gameDAO = gameDAO;
+            this.moveDAO = moveDAO;
+            this.userDAO = userDAO;
+            this.ratings = ratings;
+        }
+
+        @Override
+        public void write(List<Move> moves, Collection<Game> games, Map<String, List<Integer>> statsByResult,
+                          List<Game> finishedGames) throws SQLException {
+            Map<Integer, Rating> rated;
+            try (Connection conn = dbConfig.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    moveDAO.saveMoves(conn, moves);
+                    gameDAO.updateGames(conn, games);
+                    userDAO.updateStats(conn, statsByResult);
+                    rated = ratings.applyResults(conn, finishedGames);
+                    conn.commit();
+                } catch (SQLException | RuntimeException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+
+            ratings.publish(rated);
+        }
+    }
+
+    private static final class Entry {
+        private final long sequence;
+        private final Move move;
+        private final Game game;
+        private final boolean gameFinished;
+
+        Entry(long sequence, Move move, Game game, boolean gameFinished) {
+            this.sequence = sequence;
+            this.move = move;
+            this.game = game;
+            this.gameFinished = gameFinished;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.chess.service;
+
+// Thrown when a bounded resource turns a request away; callers should retry after the given delay.
+public class OverloadedException extends IllegalStateException {
+    private final int retryAfterSeconds;
+
+    public OverloadedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
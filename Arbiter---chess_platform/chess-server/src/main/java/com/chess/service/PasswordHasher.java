@@ -0,0 +1,144 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import org.mindrot.jbcrypt.BCrypt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs bcrypt on a fixed pool sized to the cores, with a bounded queue in front. A burst of logins
+// waits its turn or is turned away at once, instead of each request burning a core on its own
+// thread and starving game traffic.
+public class PasswordHasher {
+    public interface HashConsumer {
+        void accept(String hash) throws Exception;
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final int cost;
+    private final int retryAfterSeconds;
+
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder upgraded = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+
+    public PasswordHasher() {
+        ServerConfig config = ServerConfig.getInstance();
+        this.cost = config.getInt("auth.bcrypt.cost", 12);
+        this.retryAfterSeconds = config.getInt("auth.hash.retry.after", 1);
+        int threads = config.getInt("auth.hash.threads", Runtime.getRuntime().availableProcessors());
+        int queueLimit = config.getInt("auth.hash.queue", 64);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit), r -> {
+                    Thread thread = new Thread(r, "password-hasher-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        MetricsRegistry.getInstance().register("auth.hashing", this::getMetrics);
+    }
+
+    public String hash(String password) {
+        String result = run(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+        hashed.increment();
+        return result;
+    }
+
+    public boolean verify(String password, String hash) {
+        boolean result = run(() -> BCrypt.checkpw(password, hash));
+        verified.increment();
+        return result;
+    }
+
+    // True if the hash was made with a different cost than the configured one.
+    public boolean needsUpgrade(String hash) {
+        // $2a$12$...: the cost sits between the second and third '$'
+        int start = hash.indexOf('$', 1) + 1;
+        int end = start > 0 ? hash.indexOf('$', start) : -1;
+        if (end < 0) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(hash.substring(start, end)) != cost;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // Rehashes in the background when there is room; an upgrade skipped now happens on a later login.
+    public void upgradeLater(String password, HashConsumer onHashed) {
+        try {
+            pool.execute(() -> {
+                try {
+                    onHashed.accept(BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+                    upgraded.increment();
+                } catch (Exception e) {
+                    System.err.println("Password hash upgrade failed: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // busy; not worth turning a login away for
+        }
+    }
+
+    private <T> T run(Callable<T> work) {
+        long queuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.recordNanos(startedAt - queuedAt);
+                try {
+                    return work.call();
+                } finally {
+                    hashTime.recordNanos(System.nanoTime() - startedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new OverloadedException("Too many sign-ins right now, please retry shortly", retryAfterSeconds);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing the password");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("cost", cost);
+        metrics.put("active", pool.getActiveCount());
+        metrics.put("queued", pool.getQueue().size());
+        metrics.put("hashed", hashed.sum());
+        metrics.put("verified", verified.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("upgraded", upgraded.sum());
+        metrics.put("queueWait", queueWait.toJson());
+        metrics.put("hashTime", hashTime.toJson());
+        return metrics;
+    }
+}
@@ -0,0 +1,102 @@
+package com.chess.service;
+
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Token buckets keyed by an arbitrary string (an address, a username). Each bucket is one AtomicLong
+// holding the time at which it will be full again, the GCRA form of a token bucket, so taking a
+// token is a single CAS. Full buckets carry no information and are swept away; when the map is at
+// its bound, unknown keys share one overflow bucket rather than growing it further.
+public class RateLimiter {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    // permitsPerMinute refill steadily; up to burst can be spent at once
+    public RateLimiter(String name, int permitsPerMinute, int burst, int maxKeys) {
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, permitsPerMinute);
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.maxKeys = Math.max(1, maxKeys);
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name + "-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+
+        MetricsRegistry.getInstance().register(name, this::getMetrics);
+    }
+
+    // Takes a token for key. Returns 0 when allowed, otherwise how many seconds until one is available.
+    public int tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                overflowed.increment();
+                bucket = overflow;
+            } else {
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+            }
+        }
+
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = bucket.get();
+            long base = fullAt - now > 0 ? fullAt : now;
+            long next = base + intervalNanos;
+            if (next - now > burstNanos) {
+                rejected.increment();
+                long waitNanos = next - now - burstNanos;
+                return (int) Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, AtomicLong>> it = buckets.entrySet().iterator();
+        while (it.hasNext()) {
+            // a bucket that has refilled completely behaves exactly like a brand new one
+            if (it.next().getValue().get() - now <= 0) {
+                it.remove();
+                evicted.increment();
+            }
+        }
+    }
+
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("keys", buckets.size());
+        metrics.put("allowed", allowed.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("overflowed", overflowed.sum());
+        metrics.put("evicted", evicted.sum());
+        return metrics;
+    }
+}
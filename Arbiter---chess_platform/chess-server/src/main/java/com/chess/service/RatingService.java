@@ -0,0 +1,296 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.dao.RatingDAO;
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import com.chess.models.Game;
+import com.chess.models.Rating;
+import com.chess.models.RatingPeriod;
+import org.json.JSONObject;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Glicko-2 ratings, in one of two modes. GAME rates both players the moment a game's result is
+// journaled, inside the same transaction. PERIOD leaves ratings alone during play and recomputes
+// everyone once per rating period, as Glicko-2 intends: players are rated in parallel against their
+// opponents' pre-period ratings, then written back in short chunked transactions so the users table
+// is never held for long.
+public class RatingService {
+    public enum Mode { GAME, PERIOD }
+
+    private final RatingDAO ratingDAO;
+    private final Glicko2 glicko;
+    private final Mode mode;
+    private final double maxDeviation;
+    private final long periodLengthMs;
+    private final long periodGraceMs;
+    private final int chunkSize;
+
+    private final LongAdder gamesRated = new LongAdder();
+    private final LongAdder periodsClosed = new LongAdder();
+    private final LongAdder periodFailures = new LongAdder();
+    private final LongAdder playersRated = new LongAdder();
+    private final LatencyHistogram periodLatency = new LatencyHistogram();
+
+    private volatile Consumer<Map<Integer, Rating>> listener = ratings -> { };
+
+    private final ScheduledExecutorService scheduler;
+    private final ForkJoinPool workers;
+
+    public RatingService(RatingDAO ratingDAO) {
+        this.ratingDAO = ratingDAO;
+
+        ServerConfig config = ServerConfig.getInstance();
+        this.mode = Mode.valueOf(config.getString("rating.mode", "GAME").trim().toUpperCase());
+        this.maxDeviation = Glicko2.DEFAULT_DEVIATION;
+        this.glicko = new Glicko2(config.getDouble("rating.tau", 0.5),
+                config.getInt("rating.deviation.min", 30), maxDeviation);
+        this.periodLengthMs = config.getLong("rating.period.length", 86400000);
+        this.periodGraceMs = config.getLong("rating.period.grace", 60000);
+        this.chunkSize = config.getInt("rating.period.chunk.size", 500);
+
+        if (mode == Mode.PERIOD) {
+            this.workers = new ForkJoinPool(config.getInt("rating.period.parallelism",
+                    Runtime.getRuntime().availableProcessors()));
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rating-periods");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long checkInterval = config.getLong("rating.period.check.interval", 60000);
+            scheduler.scheduleWithFixedDelay(this::closePeriod, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        } else {
+            this.workers = null;
+            this.scheduler = null;
+        }
+
+        MetricsRegistry.getInstance().register("ratings", this::getMetrics);
+    }
+
+    // Told about every rating once its transaction has committed.
+    public void setListener(Consumer<Map<Integer, Rating>> listener) {
+        this.listener = listener;
+    }
+
+    // Called by the journal inside its flush transaction, with the finished games in the order they ended.
+    // Returns the new ratings, which the journal hands to publish() after committing.
+    public Map<Integer, Rating> applyResults(Connection conn, List<Game> finishedGames) throws SQLException {
+        Map<Integer, Rating> changed = new HashMap<>();
+        if (mode != Mode.GAME || finishedGames.isEmpty()) {
+            return changed;
+        }
+
+        Set<Integer> players = new LinkedHashSet<>();
+        for (Game game : finishedGames) {
+            if (isRated(game)) {
+                players.add(game.getWhitePlayerId());
+                players.add(game.getBlackPlayerId());
+            }
+        }
+        if (players.isEmpty()) {
+            return changed;
+        }
+
+        Map<Integer, Rating> ratings = ratingDAO.lockRatings(conn, players);
+        for (Game game : finishedGames) {
+            Rating white = ratings.get(game.getWhitePlayerId());
+            Rating black = ratings.get(game.getBlackPlayerId());
+            if (!isRated(game) || white == null || black == null) {
+                continue;
+            }
+
+            // both sides are rated off the other's rating from before this game
+            double whiteScore = scoreFor(game, game.getWhitePlayerId());
+            Rating newWhite = glicko.rateGame(white, black, whiteScore);
+            Rating newBlack = glicko.rateGame(black, white, 1 - whiteScore);
+
+            ratings.put(game.getWhitePlayerId(), newWhite);
+            ratings.put(game.getBlackPlayerId(), newBlack);
+            changed.put(game.getWhitePlayerId(), newWhite);
+            changed.put(game.getBlackPlayerId(), newBlack);
+            gamesRated.increment();
+        }
+
+        ratingDAO.saveRatings(conn, changed);
+        return changed;
+    }
+
+    public void publish(Map<Integer, Rating> committed) {
+        if (committed.isEmpty()) {
+            return;
+        }
+        try {
+            listener.accept(committed);
+        } catch (Exception e) {
+            System.err.println("Rating listener failed: " + e.getMessage());
+        }
+    }
+
+    private void closePeriod() {
+        Connection lock = null;
+        try {
+            lock = ratingDAO.acquirePeriodLock();
+            if (lock == null) {
+                return;
+            }
+
+            RatingPeriod period = nextPeriod();
+            if (period != null) {
+                long start = System.nanoTime();
+                ratePeriod(period);
+                periodLatency.recordNanos(System.nanoTime() - start);
+                periodsClosed.increment();
+            }
+        } catch (Exception e) {
+            periodFailures.increment();
+            System.err.println("Closing rating period failed: " + e.getMessage());
+        } finally {
+            if (lock != null) {
+                try {
+                    ratingDAO.releasePeriodLock(lock);
+                } catch (SQLException e) {
+                    System.err.println("Releasing rating period lock failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // An interrupted period is finished first; otherwise a new one opens once a full length has passed.
+    private RatingPeriod nextPeriod() throws SQLException {
+        RatingPeriod latest = ratingDAO.findLatestPeriod();
+        if (latest != null && !latest.isCompleted()) {
+            return latest;
+        }
+
+        // the grace keeps games still sitting in a journal out of the period they will miss
+        long end = System.currentTimeMillis() - periodGraceMs;
+        if (latest == null) {
+            // first run: an empty period marks where counting starts, so games rated before are not rated twice
+            RatingPeriod marker = ratingDAO.createPeriod(new Timestamp(end), new Timestamp(end));
+            ratingDAO.completePeriod(marker.getPeriodId());
+            return null;
+        }
+        long start = latest.getEndedAt().getTime();
+        if (end - start < periodLengthMs) {
+            return null;
+        }
+        return ratingDAO.createPeriod(new Timestamp(start), new Timestamp(end));
+    }
+
+    private void ratePeriod(RatingPeriod period) throws SQLException, InterruptedException, ExecutionException {
+        List<Game> results = ratingDAO.findResults(period.getStartedAt(), period.getEndedAt());
+
+        Map<Integer, List<Game>> gamesByPlayer = new HashMap<>();
+        for (Game game : results) {
+            gamesByPlayer.computeIfAbsent(game.getWhitePlayerId(), id -> new ArrayList<>()).add(game);
+            gamesByPlayer.computeIfAbsent(game.getBlackPlayerId(), id -> new ArrayList<>()).add(game);
+        }
+
+        // a resumed period must see the ratings from before it, not the ones its first run already wrote
+        ratingDAO.snapshotPeriod(period.getPeriodId(), gamesByPlayer.keySet());
+        Map<Integer, Rating> before = ratingDAO.loadPeriodSnapshot(period.getPeriodId(), gamesByPlayer.keySet());
+        Map<Integer, Rating> after = new ConcurrentHashMap<>();
+
+        // every player depends only on pre-period ratings, so players are independent of each other
+        workers.submit(() -> gamesByPlayer.entrySet().parallelStream().forEach(entry -> {
+            Rating player = before.get(entry.getKey());
+            if (player != null) {
+                after.put(entry.getKey(), ratePlayer(entry.getKey(), player, entry.getValue(), before));
+            }
+        })).get();
+
+        // ascending ids keep chunk writes in the same lock order as everything else touching users
+        TreeMap<Integer, Rating> ordered = new TreeMap<>(after);
+        Map<Integer, Rating> chunk = new HashMap<>();
+        for (Map.Entry<Integer, Rating> entry : ordered.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() == chunkSize) {
+                ratingDAO.savePeriodRatings(period.getPeriodId(), chunk);
+                publish(chunk);
+                chunk = new HashMap<>();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            ratingDAO.savePeriodRatings(period.getPeriodId(), chunk);
+            publish(chunk);
+        }
+        playersRated.add(after.size());
+
+        // players without games in the period only grow less certain
+        int maxUserId = ratingDAO.findMaxUserId();
+        for (int from = 0; from <= maxUserId; from += chunkSize) {
+            ratingDAO.growIdleDeviation(period.getPeriodId(), from, from + chunkSize, maxDeviation, Glicko2.SCALE);
+        }
+
+        ratingDAO.completePeriod(period.getPeriodId());
+        ratingDAO.deletePeriodSnapshots(period.getPeriodId());
+    }
+
+    private Rating ratePlayer(int userId, Rating player, List<Game> games, Map<Integer, Rating> before) {
+        Rating[] opponents = new Rating[games.size()];
+        double[] scores = new double[games.size()];
+        int count = 0;
+
+        for (Game game : games) {
+            int opponentId = game.getWhitePlayerId() == userId ? game.getBlackPlayerId() : game.getWhitePlayerId();
+            Rating opponent = before.get(opponentId);
+            if (opponent == null) {
+                continue;
+            }
+            opponents[count] = opponent;
+            scores[count] = scoreFor(game, userId);
+            count++;
+        }
+        return glicko.rate(player, opponents, scores, count);
+    }
+
+    private static boolean isRated(Game game) {
+        return game.getWhitePlayerId() > 0 && game.getBlackPlayerId() > 0
+                && (game.getResult() == Game.GameResult.WHITE_WIN
+                || game.getResult() == Game.GameResult.BLACK_WIN
+                || game.getResult() == Game.GameResult.DRAW);
+    }
+
+    private static double scoreFor(Game game, int userId) {
+        if (game.getResult() == Game.GameResult.DRAW) {
+            return 0.5;
+        }
+        boolean white = game.getWhitePlayerId() == userId;
+        return (game.getResult() == Game.GameResult.WHITE_WIN) == white ? 1 : 0;
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("mode", mode.name());
+        metrics.put("gamesRated", gamesRated.sum());
+        metrics.put("periodsClosed", periodsClosed.sum());
+        metrics.put("periodFailures", periodFailures.sum());
+        metrics.put("playersRated", playersRated.sum());
+        metrics.put("periodLatency", periodLatency.toJson());
+        return metrics;
+    }
+}
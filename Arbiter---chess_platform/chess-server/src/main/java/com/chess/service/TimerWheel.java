@@ -0,0 +1,251 @@
+package com.chess.service;
+
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hierarchical hashed timing wheel driven by one thread. The first level has 256 slots of one tick
+// each; every further level has 64 slots, each spanning a whole turn of the level below. A timer
+// sits in the coarsest level that can hold it and cascades down as its deadline approaches, so a
+// tick only touches the slot that is due instead of every pending timer.
+//
+// Schedules and cancels from other threads are queued and applied by the wheel thread; nodes are
+// linked into slots only by that thread, so the wheel itself needs no locks.
+public class TimerWheel {
+    private static final int LEVEL0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        // Safe to call from any thread and more than once; a timer that already fired is unaffected.
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                cancellations.add(this);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final String name;
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout[][] slots = new Timeout[LEVELS][];
+    private final ConcurrentLinkedQueue<Timeout> additions = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+
+    // owned by the wheel thread
+    private long currentTick;
+    private int pending;
+
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder cancelledCount = new LongAdder();
+    private volatile int pendingSnapshot;
+    private volatile boolean running = true;
+
+    public TimerWheel(String name, long tickMs) {
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMs));
+        this.startNanos = System.nanoTime();
+
+        slots[0] = new Timeout[1 << LEVEL0_BITS];
+        for (int level = 1; level < LEVELS; level++) {
+            slots[level] = new Timeout[1 << LEVEL_BITS];
+        }
+
+        this.worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+
+        MetricsRegistry.getInstance().register(name, this::getMetrics);
+    }
+
+    // Runs the task on the wheel thread once delayMs has passed; tasks must be quick and should hand real work off.
+    public Timeout schedule(Runnable task, long delayMs) {
+        // round up so a timer never fires before its delay has fully passed
+        long dueNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        long deadline = (dueNanos + tickNanos - 1) / tickNanos;
+
+        Timeout timeout = new Timeout(task, deadline);
+        additions.add(timeout);
+        scheduled.increment();
+        return timeout;
+    }
+
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+            while (currentTick < targetTick) {
+                drainQueues();
+                tick();
+            }
+            drainQueues();
+            pendingSnapshot = pending;
+
+            long sleepNanos = startNanos + (currentTick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+        }
+    }
+
+    private void drainQueues() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.level >= 0) {
+                unlink(timeout);
+                pending--;
+                cancelledCount.increment();
+            }
+        }
+        while ((timeout = additions.poll()) != null) {
+            if (timeout.cancelled) {
+                cancelledCount.increment();
+                continue;
+            }
+            place(timeout, currentTick + 1);
+            pending++;
+        }
+    }
+
+    private void tick() {
+        currentTick++;
+
+        // on each wrap of a level, pull the next slot of the level above down into the finer levels
+        int index = (int) (currentTick & ((1 << LEVEL0_BITS) - 1));
+        for (int level = 1; index == 0 && level < LEVELS; level++) {
+            int shift = LEVEL0_BITS + (level - 1) * LEVEL_BITS;
+            index = (int) ((currentTick >>> shift) & ((1 << LEVEL_BITS) - 1));
+            cascade(level, index);
+        }
+
+        int slot = (int) (currentTick & ((1 << LEVEL0_BITS) - 1));
+        Timeout timeout = slots[0][slot];
+        slots[0][slot] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+            pending--;
+
+            if (timeout.deadlineTick > currentTick) {
+                // only timers past the top level's span can land here early; put them back
+                place(timeout, currentTick + 1);
+                pending++;
+            } else if (!timeout.cancelled) {
+                fire(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    private void cascade(int level, int index) {
+        Timeout timeout = slots[level][index];
+        slots[level][index] = null;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.level = -1;
+            // the current tick's slot has not run yet, so a timer due now still fires this tick
+            place(timeout, currentTick);
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout timeout, long earliestTick) {
+        long deadline = Math.max(timeout.deadlineTick, earliestTick);
+        long delta = deadline - currentTick;
+
+        int level;
+        int slot;
+        if (delta < (1L << LEVEL0_BITS)) {
+            level = 0;
+            slot = (int) (deadline & ((1 << LEVEL0_BITS) - 1));
+        } else {
+            level = 1;
+            long span = 1L << (LEVEL0_BITS + LEVEL_BITS);
+            while (level < LEVELS - 1 && delta >= span) {
+                level++;
+                span <<= LEVEL_BITS;
+            }
+            if (delta >= span) {
+                // beyond the wheel's horizon: park in the furthest slot and re-place when it comes round
+                deadline = currentTick + span - 1;
+            }
+            int shift = LEVEL0_BITS + (level - 1) * LEVEL_BITS;
+            slot = (int) ((deadline >>> shift) & ((1 << LEVEL_BITS) - 1));
+        }
+
+        timeout.level = level;
+        timeout.slot = slot;
+        timeout.next = slots[level][slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+
+    private void fire(Timeout timeout) {
+        fired.increment();
+        try {
+            timeout.task.run();
+        } catch (Exception e) {
+            System.err.println(name + " task failed: " + e.getMessage());
+        }
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("pending", pendingSnapshot);
+        metrics.put("scheduled", scheduled.sum());
+        metrics.put("fired", fired.sum());
+        metrics.put("cancelled", cancelledCount.sum());
+        metrics.put("tickMs", TimeUnit.NANOSECONDS.toMillis(tickNanos));
+        return metrics;
+    }
+}
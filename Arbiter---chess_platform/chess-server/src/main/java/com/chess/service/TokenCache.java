@@ -0,0 +1,125 @@
+package com.chess.service;
+
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Parsed tokens keyed by their raw string, bounded in size. Every token lives for the same 24 hours,
+// so insertion order is close to expiry order: trimming from the oldest end drops expired tokens
+// first, and a full cache gives up the tokens nearest to expiring anyway. An expired entry is never
+// served; it is dropped on the lookup that finds it.
+public class TokenCache {
+    public static final class CachedToken {
+        private final String token;
+        private final String tokenId;
+        private final int userId;
+        private final String username;
+        private final long expiresAt;
+
+        CachedToken(String token, String tokenId, int userId, String username, long expiresAt) {
+            this.token = token;
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getTokenId() { return tokenId; }
+
+        public int getUserId() { return userId; }
+
+        public String getUsername() { return username; }
+
+        public long getExpiresAt() { return expiresAt; }
+    }
+
+    private final int maxSize;
+    private final Map<String, CachedToken> tokens = new ConcurrentHashMap<>();
+    // insertion order; may hold entries already removed from the map, which trimming skips
+    private final ConcurrentLinkedQueue<CachedToken> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger orderSize = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public TokenCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        MetricsRegistry.getInstance().register("auth.tokens", this::getMetrics);
+    }
+
+    // The cached token if present and unexpired, otherwise null.
+    public CachedToken get(String token) {
+        CachedToken cached = tokens.get(token);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.currentTimeMillis() > cached.expiresAt) {
+            if (tokens.remove(token, cached)) {
+                expired.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached;
+    }
+
+    public CachedToken put(String token, String tokenId, int userId, String username, long expiresAt) {
+        CachedToken cached = new CachedToken(token, tokenId, userId, username, expiresAt);
+        if (tokens.putIfAbsent(token, cached) == null) {
+            order.add(cached);
+            orderSize.incrementAndGet();
+            trim();
+        }
+        return cached;
+    }
+
+    public void remove(String token) {
+        tokens.remove(token);
+    }
+
+    private void trim() {
+        long now = System.currentTimeMillis();
+        CachedToken oldest;
+        while ((oldest = order.peek()) != null) {
+            boolean stale = tokens.get(oldest.token) != oldest;
+            boolean overfull = tokens.size() > maxSize || orderSize.get() > 2 * maxSize;
+            if (!stale && !overfull && oldest.expiresAt >= now) {
+                break;
+            }
+            if (!order.remove(oldest)) {
+                continue;
+            }
+            orderSize.decrementAndGet();
+            if (!stale && tokens.remove(oldest.token, oldest)) {
+                if (oldest.expiresAt < now) {
+                    expired.increment();
+                } else {
+                    evicted.increment();
+                }
+            }
+        }
+    }
+
+    public JSONObject getMetrics() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+
+        JSONObject metrics = new JSONObject();
+        metrics.put("size", tokens.size());
+        metrics.put("maxSize", maxSize);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", misses.sum());
+        metrics.put("hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups);
+        metrics.put("expired", expired.sum());
+        metrics.put("evicted", evicted.sum());
+        return metrics;
+    }
+}
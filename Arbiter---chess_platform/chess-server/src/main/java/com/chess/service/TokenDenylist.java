@@ -0,0 +1,194 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.dao.RevokedTokenDAO;
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Revoked token ids, kept until the token would have expired anyway. Almost every lookup is for a
+// token that was never revoked, so a Bloom filter answers first and only its rare positives reach
+// the exact map. Revocations are written to the database, loaded at startup and polled from it, so
+// they survive restarts and reach every server. Bloom bits cannot be cleared, so pruning expired
+// ids rebuilds the filter from what is left.
+public class TokenDenylist {
+    private static final int HASHES = 7;
+
+    private final RevokedTokenDAO revokedTokenDAO;
+    private final int bloomBits;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray bloom;
+    private final long syncOverlap;
+    private long lastRevocationId;
+
+    private final ScheduledExecutorService maintenance;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder bloomPositives = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder revocations = new LongAdder();
+    private final LongAdder pruned = new LongAdder();
+
+    public TokenDenylist(RevokedTokenDAO revokedTokenDAO) throws SQLException {
+        this.revokedTokenDAO = revokedTokenDAO;
+
+        ServerConfig config = ServerConfig.getInstance();
+        // ~10 bits per expected entry keeps false positives near 1% at 7 hashes
+        int expected = config.getInt("auth.revocation.expected", 100000);
+        this.bloomBits = Math.max(64, expected * 10);
+        this.bloom = new AtomicLongArray((bloomBits + 63) / 64);
+        long syncInterval = config.getLong("auth.revocation.sync.interval", 5000);
+        long pruneInterval = config.getLong("auth.revocation.prune.interval", 3600000);
+        this.syncOverlap = config.getLong("auth.revocation.sync.overlap", 1000);
+
+        sync();
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-denylist");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::syncQuietly, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::prune, pruneInterval, pruneInterval, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.getInstance().register("auth.revocations", this::getMetrics);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        lookups.increment();
+        if (!mightContain(bloom, tokenId)) {
+            return false;
+        }
+        bloomPositives.increment();
+        if (revoked.containsKey(tokenId)) {
+            hits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // Persists first, so a revocation the caller was told about is never lost to a restart.
+    public void revoke(String tokenId, long expiresAt) throws SQLException {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedTokenDAO.revoke(tokenId, expiresAt);
+        add(tokenId, expiresAt);
+        revocations.increment();
+    }
+
+    // add and rebuild share the lock so an id cannot land in a filter that is being replaced
+    private synchronized void add(String tokenId, long expiresAt) {
+        revoked.put(tokenId, expiresAt);
+        setBits(bloom, tokenId);
+    }
+
+    private void sync() throws SQLException {
+        Map<String, Long> fresh = new HashMap<>();
+        // a revocation whose insert commits late shows up below ids already seen, so each poll rereads
+        // a window behind the last id; ids that come back again are simply added again
+        long from = Math.max(0, lastRevocationId - syncOverlap);
+        lastRevocationId = Math.max(lastRevocationId, revokedTokenDAO.findSince(from, fresh));
+        for (Map.Entry<String, Long> entry : fresh.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (SQLException e) {
+            System.err.println("Syncing revoked tokens failed: " + e.getMessage());
+        }
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        int before = revoked.size();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Long>> it = revoked.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue() <= now) {
+                    it.remove();
+                }
+            }
+            AtomicLongArray rebuilt = new AtomicLongArray(bloom.length());
+            for (String tokenId : revoked.keySet()) {
+                setBits(rebuilt, tokenId);
+            }
+            bloom = rebuilt;
+        }
+        pruned.add(before - revoked.size());
+
+        try {
+            while (revokedTokenDAO.deleteExpired(now, 1000) == 1000) {
+                // keep each delete short
+            }
+        } catch (SQLException e) {
+            System.err.println("Deleting expired revocations failed: " + e.getMessage());
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray bits, String tokenId) {
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void setBits(AtomicLongArray bits, String tokenId) {
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASHES; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bloomBits);
+            long mask = 1L << bit;
+            bits.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+        }
+    }
+
+    // 64-bit FNV-1a finished with a murmur mix; the two halves drive double hashing
+    private static long hash(String tokenId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < tokenId.length(); i++) {
+            h ^= tokenId.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public void shutdown() {
+        maintenance.shutdownNow();
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("size", revoked.size());
+        metrics.put("lookups", lookups.sum());
+        metrics.put("bloomPositives", bloomPositives.sum());
+        metrics.put("hits", hits.sum());
+        metrics.put("revocations", revocations.sum());
+        metrics.put("pruned", pruned.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,299 @@
+package com.chess.service;
+
+import org.json.JSONObject;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+
+// Signs and checks HS256 tokens. Verification works on the token's characters in place: each thread
+// keeps its own initialised Mac and scratch buffers, the signature is decoded to raw bytes and
+// compared in constant time, and userId/exp/username are read by a small scanner rather than a full
+// JSON parse. Payloads the scanner does not expect fall back to org.json.
+public class TokenVerifier {
+    private static final int SIGNATURE_BYTES = 32;
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    public static final class Claims {
+        private final String tokenId;
+        private final int userId;
+        private final String username;
+        private final long expiresAt;
+
+        Claims(String tokenId, int userId, String username, long expiresAt) {
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+
+        // the jti claim; tokens issued before jti existed are identified by their signature instead
+        public String getTokenId() { return tokenId; }
+
+        public int getUserId() { return userId; }
+
+        public String getUsername() { return username; }
+
+        public long getExpiresAt() { return expiresAt; }
+    }
+
+    private static final class Scratch {
+        final Mac mac;
+        final byte[] expected = new byte[SIGNATURE_BYTES];
+        final byte[] actual = new byte[SIGNATURE_BYTES];
+        byte[] input = new byte[256];
+        byte[] payload = new byte[192];
+
+        Scratch(Mac mac) {
+            this.mac = mac;
+        }
+    }
+
+    private final ThreadLocal<Scratch> scratch;
+
+    public TokenVerifier(String secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.scratch = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(key);
+                return new Scratch(mac);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is unavailable", e);
+            }
+        });
+    }
+
+    public String sign(String data) {
+        Mac mac = scratch.get().mac;
+        byte[] signature = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    // The token's claims if it is well formed and correctly signed, otherwise null. Expiry is the caller's call.
+    public Claims verify(String token) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+
+        Scratch s = scratch.get();
+        if (!signatureMatches(token, secondDot, s)) {
+            return null;
+        }
+
+        int payloadLength = decode(token, firstDot + 1, secondDot, s);
+        if (payloadLength < 0) {
+            return null;
+        }
+        Claims claims = scan(s.payload, payloadLength, token, secondDot);
+        return claims != null ? claims : parseFully(s.payload, payloadLength, token, secondDot);
+    }
+
+    private boolean signatureMatches(String token, int secondDot, Scratch s) {
+        // signing input is header.payload; base64url is ASCII, so chars map straight to bytes
+        if (s.input.length < secondDot) {
+            s.input = new byte[Math.max(secondDot, s.input.length * 2)];
+        }
+        for (int i = 0; i < secondDot; i++) {
+            s.input[i] = (byte) token.charAt(i);
+        }
+
+        Mac mac = s.mac;
+        mac.update(s.input, 0, secondDot);
+        try {
+            mac.doFinal(s.expected, 0);
+        } catch (ShortBufferException e) {
+            return false;
+        }
+
+        int signatureChars = token.length() - secondDot - 1;
+        if (signatureChars != (SIGNATURE_BYTES * 4 + 2) / 3) {
+            return false;
+        }
+        if (decodeInto(token, secondDot + 1, token.length(), s.actual) != SIGNATURE_BYTES) {
+            return false;
+        }
+        // the last character carries two spare bits; anything but zero is a different string for the same bytes
+        char last = token.charAt(token.length() - 1);
+        if ((DECODE[last] & 0x3) != 0) {
+            return false;
+        }
+
+        // constant time: always walk every byte
+        int diff = 0;
+        for (int i = 0; i < SIGNATURE_BYTES; i++) {
+            diff |= s.expected[i] ^ s.actual[i];
+        }
+        return diff == 0;
+    }
+
+    private int decode(String token, int from, int to, Scratch s) {
+        int maxBytes = (to - from) * 3 / 4 + 1;
+        if (s.payload.length < maxBytes) {
+            s.payload = new byte[Math.max(maxBytes, s.payload.length * 2)];
+        }
+        return decodeInto(token, from, to, s.payload);
+    }
+
+    // unpadded base64url from token[from, to) into out; returns the byte count, or -1 if malformed
+    private static int decodeInto(String token, int from, int to, byte[] out) {
+        int bits = 0;
+        int bitCount = 0;
+        int length = 0;
+        for (int i = from; i < to; i++) {
+            char c = token.charAt(i);
+            int value = c < 128 ? DECODE[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                if (length == out.length) {
+                    return -1;
+                }
+                out[length++] = (byte) (bits >> bitCount);
+            }
+        }
+        return length;
+    }
+
+    // Reads a flat JSON object of string and integer values. Returns null on anything else, including
+    // escapes, so the caller can fall back to a real parser.
+    private static Claims scan(byte[] json, int length, String token, int secondDot) {
+        int i = skipSpace(json, 0, length);
+        if (i >= length || json[i] != '{') {
+            return null;
+        }
+        i++;
+
+        long userId = Long.MIN_VALUE;
+        long exp = Long.MIN_VALUE;
+        String username = null;
+        String tokenId = null;
+
+        while (true) {
+            i = skipSpace(json, i, length);
+            if (i < length && json[i] == '}') {
+                break;
+            }
+            if (i >= length || json[i] != '"') {
+                return null;
+            }
+            int keyStart = i + 1;
+            int keyEnd = endOfString(json, keyStart, length);
+            if (keyEnd < 0) {
+                return null;
+            }
+            i = skipSpace(json, keyEnd + 1, length);
+            if (i >= length || json[i] != ':') {
+                return null;
+            }
+            i = skipSpace(json, i + 1, length);
+            if (i >= length) {
+                return null;
+            }
+
+            if (json[i] == '"') {
+                int valueEnd = endOfString(json, i + 1, length);
+                if (valueEnd < 0) {
+                    return null;
+                }
+                if (keyEquals(json, keyStart, keyEnd, "username")) {
+                    username = new String(json, i + 1, valueEnd - i - 1, StandardCharsets.UTF_8);
+                } else if (keyEquals(json, keyStart, keyEnd, "jti")) {
+                    tokenId = new String(json, i + 1, valueEnd - i - 1, StandardCharsets.US_ASCII);
+                }
+                i = valueEnd + 1;
+            } else {
+                boolean negative = json[i] == '-';
+                int j = negative ? i + 1 : i;
+                long value = 0;
+                int digitsStart = j;
+                while (j < length && json[j] >= '0' && json[j] <= '9' && j - digitsStart < 18) {
+                    value = value * 10 + (json[j] - '0');
+                    j++;
+                }
+                if (j == digitsStart || (j < length && json[j] >= '0' && json[j] <= '9')) {
+                    return null;
+                }
+                if (keyEquals(json, keyStart, keyEnd, "userId")) {
+                    userId = negative ? -value : value;
+                } else if (keyEquals(json, keyStart, keyEnd, "exp")) {
+                    exp = negative ? -value : value;
+                }
+                i = j;
+            }
+
+            i = skipSpace(json, i, length);
+            if (i < length && json[i] == ',') {
+                i++;
+            } else if (i >= length || json[i] != '}') {
+                return null;
+            }
+        }
+
+        if (userId < Integer.MIN_VALUE || userId > Integer.MAX_VALUE || exp == Long.MIN_VALUE) {
+            return null;
+        }
+        return new Claims(tokenId != null ? tokenId : token.substring(secondDot + 1), (int) userId, username, exp);
+    }
+
+    private static Claims parseFully(byte[] json, int length, String token, int secondDot) {
+        try {
+            JSONObject payload = new JSONObject(new String(json, 0, length, StandardCharsets.UTF_8));
+            String tokenId = payload.optString("jti", token.substring(secondDot + 1));
+            return new Claims(tokenId, payload.getInt("userId"), payload.optString("username", null),
+                    payload.getLong("exp"));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int skipSpace(byte[] json, int i, int length) {
+        while (i < length && (json[i] == ' ' || json[i] == '\t' || json[i] == '\n' || json[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+
+    // index of the closing quote, or -1 if the string is unterminated or uses escapes
+    private static int endOfString(byte[] json, int i, int length) {
+        while (i < length) {
+            if (json[i] == '"') {
+                return i;
+            }
+            if (json[i] == '\\') {
+                return -1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static boolean keyEquals(byte[] json, int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (json[start + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,184 @@
+package com.chess.service;
+
+import com.chess.config.ServerConfig;
+import com.chess.metrics.MetricsRegistry;
+import com.chess.models.WaitingGame;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Games waiting for an opponent, newest first. Reads never touch the database; the table is only
+// read once at startup. Subscribers get add/remove events on a single dispatch thread, after
+// their initial snapshot, so every subscriber sees the same order of changes.
+public class WaitingGamesIndex {
+    public interface Listener {
+        void onSnapshot(JSONObject page);
+
+        void onAdded(JSONObject game);
+
+        void onRemoved(String gameCode);
+    }
+
+    private final NavigableMap<Long, WaitingGame> bySequence = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> sequenceByCode = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    // only touched from the dispatch thread
+    private final List<Listener> subscribers = new ArrayList<>();
+    private final ScheduledExecutorService dispatcher;
+
+    private final int maxPageSize;
+    private final long maxWaitMs;
+
+    private final LongAdder added = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder pageReads = new LongAdder();
+
+    public WaitingGamesIndex(Consumer<String> onExpired) {
+        ServerConfig config = ServerConfig.getInstance();
+        this.maxPageSize = config.getInt("games.waiting.page.max", 100);
+        this.maxWaitMs = config.getLong("games.waiting.max.age", 3600000);
+        long sweepInterval = config.getLong("games.waiting.sweep.interval", 60000);
+
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "waiting-games");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleWithFixedDelay(() -> expire(onExpired), sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.getInstance().register("games.waiting", this::getMetrics);
+    }
+
+    public void seed(Collection<WaitingGame> games) {
+        for (WaitingGame game : games) {
+            add(game);
+        }
+    }
+
+    public void add(WaitingGame game) {
+        long seq = sequence.incrementAndGet();
+        if (sequenceByCode.putIfAbsent(game.getGameCode(), seq) != null) {
+            return;
+        }
+        bySequence.put(seq, game);
+        added.increment();
+
+        JSONObject json = toJson(game, seq);
+        dispatch(listener -> listener.onAdded(json));
+    }
+
+    public void remove(String gameCode) {
+        Long seq = sequenceByCode.remove(gameCode);
+        if (seq == null || bySequence.remove(seq) == null) {
+            return;
+        }
+        removed.increment();
+        dispatch(listener -> listener.onRemoved(gameCode));
+    }
+
+    public boolean contains(String gameCode) {
+        return sequenceByCode.containsKey(gameCode);
+    }
+
+    // One page, newest first. before is the nextCursor of the previous page, or null for the first.
+    public JSONObject page(Long before, int limit, Integer minRating, Integer maxRating) {
+        pageReads.increment();
+        int size = Math.max(1, Math.min(limit, maxPageSize));
+        NavigableMap<Long, WaitingGame> view = before == null
+                ? bySequence.descendingMap()
+                : bySequence.headMap(before, false).descendingMap();
+
+        JSONArray games = new JSONArray();
+        Long last = null;
+        for (Map.Entry<Long, WaitingGame> entry : view.entrySet()) {
+            WaitingGame game = entry.getValue();
+            if ((minRating != null && game.getCreatorRating() < minRating)
+                    || (maxRating != null && game.getCreatorRating() > maxRating)) {
+                continue;
+            }
+            if (games.length() == size) {
+                break;
+            }
+            games.put(toJson(game, entry.getKey()));
+            last = entry.getKey();
+        }
+
+        JSONObject page = new JSONObject();
+        page.put("games", games);
+        page.put("total", bySequence.size());
+        if (last != null && games.length() == size) {
+            page.put("nextCursor", last);
+        }
+        return page;
+    }
+
+    public void subscribe(Listener listener) {
+        dispatcher.execute(() -> {
+            subscribers.add(listener);
+            listener.onSnapshot(page(null, maxPageSize, null, null));
+        });
+    }
+
+    public void unsubscribe(Listener listener) {
+        dispatcher.execute(() -> subscribers.remove(listener));
+    }
+
+    public void shutdown() {
+        dispatcher.shutdownNow();
+    }
+
+    private void dispatch(Consumer<Listener> event) {
+        dispatcher.execute(() -> {
+            for (Listener listener : subscribers) {
+                try {
+                    event.accept(listener);
+                } catch (Exception e) {
+                    System.err.println("Waiting games listener failed: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void expire(Consumer<String> onExpired) {
+        long cutoff = System.currentTimeMillis() - maxWaitMs;
+        for (WaitingGame game : bySequence.values()) {
+            // entries are in creation order, so the first young one ends the scan
+            if (game.getCreatedAt() >= cutoff) {
+                break;
+            }
+            onExpired.accept(game.getGameCode());
+        }
+    }
+
+    private static JSONObject toJson(WaitingGame game, long seq) {
+        JSONObject json = new JSONObject();
+        json.put("gameCode", game.getGameCode());
+        json.put("creator", game.getCreatorName());
+        json.put("creatorRating", game.getCreatorRating());
+        json.put("createdAt", game.getCreatedAt());
+        json.put("cursor", seq);
+        return json;
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("size", bySequence.size());
+        metrics.put("added", added.sum());
+        metrics.put("removed", removed.sum());
+        metrics.put("pageReads", pageReads.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,115 @@
+package com.chess.websocket;
+
+import com.chess.engine.Pieces;
+import com.chess.engine.Squares;
+import com.chess.models.Game;
+import com.chess.models.Move;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// The chess-binary subprotocol. Every frame starts with a one-byte type; integers are big-endian,
+// squares are 0-63 with a1 = 0, and promotions are piece types (1 knight .. 4 queen, 0 none).
+//
+//   client -> server   0x01 MOVE         from, to [, promotion]
+//                      0x02 RESIGN
+//                      0x03 SYNC         [since:int]
+//   server -> client   0x10 MOVE_MADE    seq:int, from, to, promotion, whiteMs:int, blackMs:int
+//                      0x11 GAME_STATUS  seq:int, status, result, whiteMs:int, blackMs:int
+//                      0x7F JSON         a UTF-8 JSON message, for everything without a layout of its own
+//
+// Status and result are the ordinals of Game.GameStatus and Game.GameResult, result + 1 so that 0 means
+// none. Clocks are -1 in untimed games. Binary sessions always receive the delta events of protocol 2.
+public final class BinaryCodec {
+    public static final String SUBPROTOCOL = "chess-binary";
+
+    private static final byte MOVE = 0x01;
+    private static final byte RESIGN = 0x02;
+    private static final byte SYNC = 0x03;
+    private static final byte MOVE_MADE = 0x10;
+    private static final byte GAME_STATUS = 0x11;
+    private static final byte JSON = 0x7F;
+
+    private static final int MOVE_MADE_BYTES = 16;
+    private static final int GAME_STATUS_BYTES = 15;
+
+    private BinaryCodec() {
+    }
+
+    public static ClientCommand decode(ByteBuffer frame) {
+        if (!frame.hasRemaining()) {
+            throw new IllegalArgumentException("Empty frame");
+        }
+        byte type = frame.get();
+        switch (type) {
+            case MOVE:
+                if (frame.remaining() < 2) {
+                    throw new IllegalArgumentException("Truncated move");
+                }
+                String from = square(frame.get());
+                String to = square(frame.get());
+                String promotion = null;
+                if (frame.hasRemaining()) {
+                    int piece = frame.get();
+                    if (piece != 0) {
+                        if (piece < Pieces.KNIGHT || piece > Pieces.QUEEN) {
+                            throw new IllegalArgumentException("Invalid promotion piece: " + piece);
+                        }
+                        promotion = String.valueOf(Pieces.typeSymbol(piece));
+                    }
+                }
+                return new ClientCommand("MOVE", from, to, promotion, -1);
+            case RESIGN:
+                return new ClientCommand("RESIGN", null, null, null, -1);
+            case SYNC:
+                return new ClientCommand("SYNC", null, null, null, frame.remaining() >= 4 ? frame.getInt() : -1);
+            default:
+                throw new IllegalArgumentException("Unknown message type");
+        }
+    }
+
+    private static String square(byte square) {
+        if (square < 0 || square > 63) {
+            throw new IllegalArgumentException("Invalid square: " + square);
+        }
+        return Squares.name(square).toUpperCase();
+    }
+
+    public static ByteBuffer moveMade(long seq, Game game, Move move) {
+        ByteBuffer frame = ByteBuffer.allocate(MOVE_MADE_BYTES);
+        frame.put(MOVE_MADE);
+        frame.putInt((int) seq);
+        frame.put((byte) Squares.parse(move.getFromSquare()));
+        frame.put((byte) Squares.parse(move.getToSquare()));
+        String promotion = move.getPromotion();
+        frame.put((byte) (promotion != null && !promotion.isEmpty() ? Pieces.typeFromSymbol(promotion.charAt(0)) : 0));
+        putClock(frame, game);
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    public static ByteBuffer statusChanged(long seq, Game game) {
+        ByteBuffer frame = ByteBuffer.allocate(GAME_STATUS_BYTES);
+        frame.put(GAME_STATUS);
+        frame.putInt((int) seq);
+        frame.put((byte) game.getStatus().ordinal());
+        frame.put((byte) (game.getResult() != null ? game.getResult().ordinal() + 1 : 0));
+        putClock(frame, game);
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    private static void putClock(ByteBuffer frame, Game game) {
+        frame.putInt(game.isTimed() ? (int) game.getWhiteTimeMs() : -1);
+        frame.putInt(game.isTimed() ? (int) game.getBlackTimeMs() : -1);
+    }
+
+    public static ByteBuffer wrapJson(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(bytes.length + 1);
+        frame.put(JSON);
+        frame.put(bytes);
+        frame.flip();
+        return frame.asReadOnlyBuffer();
+    }
+}
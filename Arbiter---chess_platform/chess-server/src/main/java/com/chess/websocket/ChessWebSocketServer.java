@@ -1,8 +1,11 @@
 package com.chess.websocket;
 
+import com.chess.config.ServerConfig;
 import com.chess.service.AuthService;
+import com.chess.service.GameEventListener;
 import com.chess.service.GameService;
 import com.chess.models.Game;
+import com.chess.models.Move;
 import org.json.JSONObject;
 
 import jakarta.websocket.CloseReason;
@@ -15,29 +18,83 @@ import jakarta.websocket.server.PathParam;
 import jakarta.websocket.server.ServerEndpoint;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
 import java.util.concurrent.atomic.AtomicInteger;
 
-@ServerEndpoint("/com/chess/{gameCode}")
+// JSON text frames unless the client negotiates the chess-binary subprotocol (see BinaryCodec).
+@ServerEndpoint(value = "/com/chess/{gameCode}", subprotocols = { BinaryCodec.SUBPROTOCOL, "chess-json" })
 public class ChessWebSocketServer {
-    private static final Map<String, Session> sessions = new ConcurrentHashMap<>();
-    private static final Map<String, String> sessionToGame = new ConcurrentHashMap<>();
-    private static final Map<String, Integer> sessionToUser = new ConcurrentHashMap<>();
+    private static final GameSessionIndex sessions = new GameSessionIndex("websocket.sessions");
+    private static final SessionSender.Stats outbound = new SessionSender.Stats("websocket.outbound");
+    private static final ProtocolStats protocols = new ProtocolStats("websocket.protocols");
+    private static final ReplayBuffers replay = new ReplayBuffers("websocket.replay",
+            ServerConfig.getInstance().getInt("websocket.replay.size", 64));
+    private static final int outboundQueue = ServerConfig.getInstance().getInt("websocket.outbound.queue", 64);
+    private static final SessionSender.OverflowPolicy overflowPolicy = SessionSender.OverflowPolicy.valueOf(
+            ServerConfig.getInstance().getString("websocket.outbound.overflow", "CONFLATE").trim().toUpperCase());
     private static final AtomicInteger sessionIdCounter = new AtomicInteger(1);
 
     private static AuthService authService;
     private static GameService gameService;
+    private static SpectatorHub spectators;
 
-    public static void setServices(AuthService authService, GameService gameService) {
+    public static void setServices(AuthService authService, GameService gameService, SpectatorHub spectators) {
         ChessWebSocketServer.authService = authService;
         ChessWebSocketServer.gameService = gameService;
+        ChessWebSocketServer.spectators = spectators;
+        gameService.setEventListener(new GameEventListener() {
+            @Override
+            public void onGameStarted(Game game) {
+                ChessWebSocketServer.onGameStarted(game);
+            }
+
+            @Override
+            public void onGameEnded(Game game, String reason) {
+                ChessWebSocketServer.onGameEnded(game, reason);
+            }
+
+            @Override
+            public void onGameUnloaded(String gameCode) {
+                replay.discard(gameCode);
+            }
+        });
+    }
+
+    // Someone joined over HTTP: whoever is already watching learns the opponent and that the game is on.
+    private static void onGameStarted(Game game) {
+        String gameCode = game.getGameCode();
+        try {
+            JSONObject gameState = gameService.getGameState(gameCode);
+            if (gameState != null) {
+                broadcastGameUpdate(gameCode, game, gameState);
+            }
+        } catch (Exception e) {
+            System.err.println("Could not announce start of game " + gameCode + ": " + e.getMessage());
+        }
+    }
+
+    // Games that end on the clock or by abandonment have nobody's message to answer, so announce them here.
+    private static void onGameEnded(Game game, String reason) {
+        String gameCode = game.getGameCode();
+        try {
+            broadcastEvent(gameCode, game, GameEvents.statusChanged(game), true, null);
+
+            JSONObject result = new JSONObject();
+            result.put("winner", gameService.getWinnerName(gameCode));
+            result.put("reason", reason);
+            result.put("loser", gameService.getLoserName(gameCode));
+
+            broadcastToGame(gameCode, null, createMessage("GAME_END", result));
+        } catch (Exception e) {
+            System.err.println("Could not announce end of game " + gameCode + ": " + e.getMessage());
+        }
     }
 
     @OnOpen
     public void onOpen(Session session, @PathParam("gameCode") String gameCode) {
         try {
-            String token = getTokenFromQuery(session.getQueryString());
+            String token = getQueryParam(session.getQueryString(), "token");
 
             if (token == null || !authService.validateToken(token)) {
                 session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
@@ -46,24 +103,35 @@ public class ChessWebSocketServer {
             }
 
             int userId = authService.getUserIdFromToken(token);
+            // delta events are opt-in; existing clients keep receiving the full state on every update
+            int protocol;
+            if (BinaryCodec.SUBPROTOCOL.equals(session.getNegotiatedSubprotocol())) {
+                protocol = GameEvents.PROTOCOL_BINARY;
+            } else if (String.valueOf(GameEvents.PROTOCOL_DELTA).equals(
+                    getQueryParam(session.getQueryString(), "protocol"))) {
+                protocol = GameEvents.PROTOCOL_DELTA;
+            } else {
+                protocol = GameEvents.PROTOCOL_FULL_STATE;
+            }
 
             String sessionId = "session-" + sessionIdCounter.getAndIncrement();
-            sessions.put(sessionId, session);
-            sessionToGame.put(sessionId, gameCode);
-            sessionToUser.put(sessionId, userId);
+            Game game = gameService.getGame(gameCode);
+            String side = game != null ? getUserSide(game, userId) : "SPECTATOR";
+            SessionSender sender = new SessionSender(session, outboundQueue, overflowPolicy, outbound,
+                    protocols.forEncoding(protocol == GameEvents.PROTOCOL_BINARY));
+            SessionHandle handle = new SessionHandle(sessionId, session, sender, gameCode, userId, protocol, side);
 
-            session.getUserProperties().put("sessionId", sessionId);
+            session.getUserProperties().put("handle", handle);
 
-            sendMessage(session, createMessage("CONNECTED",
+            sendMessage(handle, createMessage("CONNECTED",
                     "Connected to game " + gameCode));
 
-            broadcastToGame(gameCode, sessionId, createMessage("PLAYER_JOINED",
-                    "Player joined the game"));
-
-            broadcastToGame(gameCode, sessionId, createMessage("PLAYER_JOINED",
-                    "Player joined the game"));
+            // a reconnecting client says how far it got and is sent only what it missed
+            String since = getQueryParam(session.getQueryString(), "since");
+            long sinceSeq = since != null && since.matches("\\d{1,18}") ? Long.parseLong(since) : -1;
 
-            sendFullGameStateToAll(gameCode);
+            gameService.playerConnected(gameCode, userId);
+            gameService.submit(gameCode, () -> attach(handle, sinceSeq));
 
         } catch (Exception e) {
             try {
@@ -77,45 +145,108 @@ public class ChessWebSocketServer {
 
     @OnMessage
     public void onMessage(String message, Session session) {
+        SessionHandle handle = (SessionHandle) session.getUserProperties().get("handle");
+        if (handle == null) {
+            return;
+        }
+        protocols.forEncoding(false).received(message.length());
         try {
-            String sessionId = (String) session.getUserProperties().get("sessionId");
-            String gameCode = sessionToGame.get(sessionId);
-            int userId = sessionToUser.get(sessionId);
-
-            JSONObject jsonMessage = new JSONObject(message);
-            String type = jsonMessage.getString("type");
-
-            switch (type) {
-                case "MOVE":
-                    handleMove(gameCode, userId, jsonMessage, session);
-                    break;
-                case "RESIGN":
-                    handleResign(gameCode, userId, session);
-                    break;
-                default:
-                    sendMessage(session, createMessage("ERROR", "Unknown message type"));
-            }
+            dispatch(handle, ClientCommand.fromJson(new JSONObject(message)));
+        } catch (Exception e) {
+            sendMessage(handle, createMessage("ERROR", e.getMessage()));
+        }
+    }
 
+    @OnMessage(maxMessageSize = 64)
+    public void onBinaryMessage(ByteBuffer message, Session session) {
+        SessionHandle handle = (SessionHandle) session.getUserProperties().get("handle");
+        if (handle == null) {
+            return;
+        }
+        protocols.forEncoding(true).received(message.remaining());
+        try {
+            dispatch(handle, BinaryCodec.decode(message));
         } catch (Exception e) {
-            sendMessage(session, createMessage("ERROR", e.getMessage()));
+            sendMessage(handle, createMessage("ERROR", e.getMessage()));
+        }
+    }
+
+    private void dispatch(SessionHandle handle, ClientCommand command) {
+        String gameCode = handle.getGameCode();
+        int userId = handle.getUserId();
+
+        // run on the game's own stripe so moves, resigns and their broadcasts stay in order
+        switch (command.getType()) {
+            case "MOVE":
+                gameService.submit(gameCode, () -> handleMove(gameCode, userId, command, handle));
+                break;
+            case "RESIGN":
+                gameService.submit(gameCode, () -> handleResign(gameCode, userId, handle));
+                break;
+            case "SYNC":
+                gameService.submit(gameCode, () -> resume(handle, command.getSince()));
+                break;
+            default:
+                sendMessage(handle, createMessage("ERROR", "Unknown message type"));
         }
     }
 
     @OnClose
     public void onClose(Session session) {
-        String sessionId = (String) session.getUserProperties().get("sessionId");
+        SessionHandle handle = (SessionHandle) session.getUserProperties().get("handle");
+
+        if (handle != null) {
+            handle.getSender().close();
+            gameService.submit(handle.getGameCode(), () -> detach(handle));
+        }
+    }
+
+    // Joining and leaving the game's sessions happen on its stripe, in between its events, so a new
+    // session's catch-up and the live events after it arrive in order.
+    private void attach(SessionHandle handle, long since) {
+        if (!handle.isOpen()) {
+            return;
+        }
+        String gameCode = handle.getGameCode();
+        sessions.add(handle);
+
+        broadcastToGame(gameCode, handle.getSessionId(), createMessage("PLAYER_JOINED",
+                "Player joined the game"));
+
+        broadcastToGame(gameCode, handle.getSessionId(), createMessage("PLAYER_JOINED",
+                "Player joined the game"));
+
+        resume(handle, since);
+    }
 
-        if (sessionId != null) {
-            String gameCode = sessionToGame.get(sessionId);
+    private void detach(SessionHandle handle) {
+        String gameCode = handle.getGameCode();
+        sessions.remove(handle);
 
-            sessions.remove(sessionId);
-            sessionToGame.remove(sessionId);
-            sessionToUser.remove(sessionId);
+        broadcastToGame(gameCode, handle.getSessionId(),
+                createMessage("PLAYER_LEFT", "Player disconnected"));
 
-            if (gameCode != null) {
-                broadcastToGame(gameCode, sessionId,
-                        createMessage("PLAYER_LEFT", "Player disconnected"));
+        if (!sessions.hasUserSession(gameCode, handle.getUserId())) {
+            gameService.playerDisconnected(gameCode, handle.getUserId());
+        }
+    }
+
+    // Events after since from the game's replay buffer, or a snapshot if they are not all there.
+    private void resume(SessionHandle handle, long since) {
+        try {
+            Game game = gameService.getGame(handle.getGameCode());
+            if (game == null) {
+                return;
             }
+            if (handle.wantsEvents() && since >= 0) {
+                long current = GameEvents.sequenceOf(game);
+                if (since == current || replay.replay(handle.getGameCode(), since, current, handle)) {
+                    return;
+                }
+            }
+            sendSnapshot(handle);
+        } catch (Exception e) {
+            sendMessage(handle, createMessage("ERROR", e.getMessage()));
         }
     }
 
@@ -125,26 +256,23 @@ public class ChessWebSocketServer {
         throwable.printStackTrace();
     }
 
-    private void handleMove(String gameCode, int userId, JSONObject message, Session session) {
+    private void handleMove(String gameCode, int userId, ClientCommand command, SessionHandle handle) {
         try {
-            String from = message.getString("from").toUpperCase();
-            String to = message.getString("to").toUpperCase();
-            String promotion = message.optString("promotion", null);
+            String from = command.getFrom() != null ? command.getFrom().toUpperCase() : null;
+            String to = command.getTo() != null ? command.getTo().toUpperCase() : null;
+            String promotion = command.getPromotion();
 
             Game game = gameService.makeMove(gameCode, userId, from, to, promotion);
+            Move move = gameService.getLastMove(gameCode);
 
-            JSONObject gameState = gameService.getGameState(gameCode);
-            if (gameState == null) {
-                throw new IllegalStateException("Game not found for code " + gameCode);
-            }
-
-            gameState.put("lastMove", new JSONObject()
+            JSONObject lastMove = new JSONObject()
                     .put("from", from)
-                    .put("to", to));
-
-            broadcastGameUpdate(gameCode, game, gameState);
+                    .put("to", to);
+            broadcastEvent(gameCode, game, move != null ? GameEvents.moveMade(game, move) : null, true, lastMove);
 
             if (game.getStatus() == Game.GameStatus.FINISHED) {
+                broadcastEvent(gameCode, game, GameEvents.statusChanged(game), false, null);
+
                 JSONObject result = new JSONObject();
                 result.put("winner", gameService.getWinnerName(gameCode));
                 result.put("reason", "Game finished");
@@ -154,40 +282,84 @@ public class ChessWebSocketServer {
             }
 
         } catch (Exception e) {
-            sendMessage(session, createMessage("MOVE_INVALID", e.getMessage()));
+            sendMessage(handle, createMessage("MOVE_INVALID", e.getMessage()));
         }
     }
 
-    private void broadcastGameUpdate(String gameCode, Game game, JSONObject gameState) {
-        for (Map.Entry<String, String> entry : sessionToGame.entrySet()) {
-            if (!entry.getValue().equals(gameCode)) {
+    // Sends event to protocol 2 sessions, and the full state to protocol 1 sessions if fullState is set.
+    // The full state is only built when someone needs it; a null event sends it to everyone.
+    private static void broadcastEvent(String gameCode, Game game, WireMessage event, boolean fullState,
+                                       JSONObject lastMove) throws SQLException {
+        if (event != null) {
+            replay.record(gameCode, event);
+        }
+        if (game.getStatus() == Game.GameStatus.FINISHED) {
+            replay.discard(gameCode);
+        }
+
+        GameUpdateFrames frames = null;
+        for (SessionHandle handle : sessions.sessionsOf(gameCode)) {
+            if (!handle.isOpen()) {
                 continue;
             }
 
-            String sessionId = entry.getKey();
-            Session targetSession = sessions.get(sessionId);
-            if (targetSession == null || !targetSession.isOpen()) {
+            String yourSide = getUserSide(game, handle.getUserId());
+            handle.setSide(yourSide);
+            if (event != null && handle.wantsEvents()) {
+                handle.send(event, false);
                 continue;
             }
-
-            Integer userId = sessionToUser.get(sessionId);
-            if (userId == null) {
+            if (!fullState && event != null) {
                 continue;
             }
+            if (frames == null) {
+                frames = stateFrames(gameCode, game, lastMove);
+                if (frames == null) {
+                    return;
+                }
+            }
+            handle.send(frames.forSide(yourSide), true);
+        }
 
-            String yourSide = getUserSide(game, userId);
+        // watch-only spectators follow the state whatever changed it, once every player has been served
+        if (spectators.isWatched(gameCode)) {
+            if (frames == null) {
+                frames = stateFrames(gameCode, game, lastMove);
+            }
+            if (frames != null) {
+                spectators.publish(gameCode, frames.forSide("SPECTATOR"), true);
+            }
+        }
+    }
 
-            JSONObject message = new JSONObject();
-            message.put("type", "GAME_UPDATE");
-            message.put("data", gameState);
-            message.put("yourSide", yourSide);
-            message.put("timestamp", System.currentTimeMillis());
+    private static GameUpdateFrames stateFrames(String gameCode, Game game, JSONObject lastMove) throws SQLException {
+        JSONObject gameState = gameService.getGameState(gameCode);
+        if (gameState == null) {
+            return null;
+        }
+        if (lastMove != null) {
+            gameState.put("lastMove", lastMove);
+        }
+        gameState.put("seq", GameEvents.sequenceOf(game));
+        return new GameUpdateFrames(gameState);
+    }
 
-            sendMessage(targetSession, message);
+    private static void broadcastGameUpdate(String gameCode, Game game, JSONObject gameState) {
+        gameState.put("seq", GameEvents.sequenceOf(game));
+        GameUpdateFrames frames = new GameUpdateFrames(gameState);
+        for (SessionHandle handle : sessions.sessionsOf(gameCode)) {
+            if (!handle.isOpen()) {
+                continue;
+            }
+
+            String yourSide = getUserSide(game, handle.getUserId());
+            handle.setSide(yourSide);
+            handle.send(frames.forSide(yourSide), true);
         }
+        spectators.publish(gameCode, frames.forSide("SPECTATOR"), true);
     }
 
-    private String getUserSide(Game game, int userId) {
+    private static String getUserSide(Game game, int userId) {
         if (game.getWhitePlayerId() == userId) {
             return "WHITE";
         } else if (game.getBlackPlayerId() == userId) {
@@ -196,28 +368,34 @@ public class ChessWebSocketServer {
         return "SPECTATOR";
     }
 
-    private void sendFullGameStateToAll(String gameCode) {
+    // A snapshot for one session: a new connection, or a client that missed more than can be replayed.
+    private void sendSnapshot(SessionHandle handle) {
         try {
-            JSONObject gameState = gameService.getGameState(gameCode);
-            if (gameState == null) {
-                return;
-            }
-
-            Game game = gameService.getGame(gameCode);
-            if (game == null) {
+            Game game = gameService.getGame(handle.getGameCode());
+            JSONObject gameState = gameService.getGameState(handle.getGameCode());
+            if (game == null || gameState == null) {
+                sendMessage(handle, createMessage("ERROR", "Game not found"));
                 return;
             }
 
-            broadcastGameUpdate(gameCode, game, gameState);
+            gameState.put("seq", GameEvents.sequenceOf(game));
+            String yourSide = getUserSide(game, handle.getUserId());
+            handle.setSide(yourSide);
+            handle.send(new GameUpdateFrames(gameState).forSide(yourSide), true);
         } catch (Exception e) {
-            e.printStackTrace();
+            sendMessage(handle, createMessage("ERROR", e.getMessage()));
         }
     }
 
-    private void handleResign(String gameCode, int userId, Session session) {
+    private void handleResign(String gameCode, int userId, SessionHandle handle) {
         try {
             gameService.resignGame(gameCode, userId);
 
+            Game game = gameService.getGame(gameCode);
+            if (game != null) {
+                broadcastEvent(gameCode, game, GameEvents.statusChanged(game), false, null);
+            }
+
             JSONObject result = new JSONObject();
             result.put("winner", gameService.getWinnerName(gameCode));
             result.put("reason", "Resigned");
@@ -226,32 +404,25 @@ public class ChessWebSocketServer {
             broadcastToGame(gameCode, null, createMessage("GAME_END", result));
 
         } catch (Exception e) {
-            sendMessage(session, createMessage("ERROR", e.getMessage()));
+            sendMessage(handle, createMessage("ERROR", e.getMessage()));
         }
     }
 
-    private void broadcastToGame(String gameCode, String excludeSessionId, JSONObject message) {
-        for (Map.Entry<String, String> entry : sessionToGame.entrySet()) {
-            if (entry.getValue().equals(gameCode) &&
-                    !entry.getKey().equals(excludeSessionId)) {
-
-                Session targetSession = sessions.get(entry.getKey());
-                if (targetSession != null && targetSession.isOpen()) {
-                    sendMessage(targetSession, message);
-                }
+    private static void broadcastToGame(String gameCode, String excludeSessionId, JSONObject message) {
+        WireMessage wire = new WireMessage(message.toString());
+        for (SessionHandle handle : sessions.sessionsOf(gameCode)) {
+            if (!handle.getSessionId().equals(excludeSessionId) && handle.isOpen()) {
+                handle.send(wire, false);
             }
         }
+        spectators.publish(gameCode, wire, false);
     }
 
-    private void sendMessage(Session session, JSONObject message) {
-        try {
-            session.getBasicRemote().sendText(message.toString());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private static void sendMessage(SessionHandle handle, JSONObject message) {
+        handle.send(new WireMessage(message.toString()), false);
     }
 
-    private JSONObject createMessage(String type, Object data) {
+    private static JSONObject createMessage(String type, Object data) {
         JSONObject message = new JSONObject();
         message.put("type", type);
         message.put("data", data);
@@ -259,14 +430,14 @@ public class ChessWebSocketServer {
         return message;
     }
 
-    private String getTokenFromQuery(String queryString) {
+    private String getQueryParam(String queryString, String name) {
         if (queryString == null)
             return null;
 
         String[] params = queryString.split("&");
         for (String param : params) {
             String[] pair = param.split("=");
-            if (pair.length == 2 && "token".equals(pair[0])) {
+            if (pair.length == 2 && name.equals(pair[0])) {
                 return pair[1];
             }
         }
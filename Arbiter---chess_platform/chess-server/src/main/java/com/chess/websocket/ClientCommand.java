@@ -0,0 +1,36 @@
+package com.chess.websocket;
+
+import org.json.JSONObject;
+
+// What a client asked for, whichever encoding it arrived in.
+public class ClientCommand {
+    private final String type;
+    private final String from;
+    private final String to;
+    private final String promotion;
+    private final long since;
+
+    public ClientCommand(String type, String from, String to, String promotion, long since) {
+        this.type = type;
+        this.from = from;
+        this.to = to;
+        this.promotion = promotion;
+        this.since = since;
+    }
+
+    public static ClientCommand fromJson(JSONObject message) {
+        return new ClientCommand(message.getString("type"), message.optString("from", null),
+                message.optString("to", null), message.optString("promotion", null), message.optLong("since", -1));
+    }
+
+    public String getType() { return type; }
+
+    public String getFrom() { return from; }
+
+    public String getTo() { return to; }
+
+    public String getPromotion() { return promotion; }
+
+    // for SYNC: the last sequence number the client has, or -1 to ask for a snapshot
+    public long getSince() { return since; }
+}
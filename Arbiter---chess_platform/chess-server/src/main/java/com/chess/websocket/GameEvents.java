@@ -0,0 +1,82 @@
+package com.chess.websocket;
+
+import com.chess.models.Game;
+import com.chess.models.Move;
+import org.json.JSONObject;
+
+// Protocol 2 events: each move or status change goes out on its own, numbered in the game's sequence.
+// The sequence is a function of the game itself, one per half-move played plus one once the game
+// has finished, so it needs no bookkeeping and survives the game leaving memory or the server
+// restarting. A snapshot carries the sequence it reflects; a client that sees a number other than
+// the one it expects next asks for a new snapshot.
+public final class GameEvents {
+    public static final int PROTOCOL_FULL_STATE = 1;
+    public static final int PROTOCOL_DELTA = 2;
+    // delta events in the compact encoding of BinaryCodec
+    public static final int PROTOCOL_BINARY = 3;
+
+    private GameEvents() {
+    }
+
+    public static long sequenceOf(Game game) {
+        String fen = game.getFenPosition();
+        int fullmove = 1;
+        int lastSpace = fen != null ? fen.lastIndexOf(' ') : -1;
+        if (lastSpace >= 0) {
+            try {
+                fullmove = Integer.parseInt(fen.substring(lastSpace + 1));
+            } catch (NumberFormatException e) {
+                fullmove = 1;
+            }
+        }
+        long plies = (fullmove - 1) * 2L + ("BLACK".equals(game.getTurn()) ? 1 : 0);
+        return plies + (game.getStatus() == Game.GameStatus.FINISHED ? 1 : 0);
+    }
+
+    public static WireMessage moveMade(Game game, Move move) {
+        JSONObject data = new JSONObject();
+        data.put("from", move.getFromSquare());
+        data.put("to", move.getToSquare());
+        data.put("san", move.getSanNotation());
+        if (move.getPromotion() != null) {
+            data.put("promotion", move.getPromotion());
+        }
+        if (game.isTimed()) {
+            data.put("clock", clock(game));
+        }
+        // a finishing move is followed by its own status event, so the move itself is one sequence back
+        long seq = sequenceOf(game) - (game.getStatus() == Game.GameStatus.FINISHED ? 1 : 0);
+        return new WireMessage(event("MOVE_MADE", seq, data), BinaryCodec.moveMade(seq, game, move), seq);
+    }
+
+    public static WireMessage statusChanged(Game game) {
+        JSONObject data = new JSONObject();
+        data.put("status", game.getStatus().toString());
+        if (game.getResult() != null) {
+            data.put("result", game.getResult().toString());
+        }
+        if (game.isTimed()) {
+            data.put("clock", clock(game));
+        }
+        long seq = sequenceOf(game);
+        return new WireMessage(event("GAME_STATUS", seq, data), BinaryCodec.statusChanged(seq, game), seq);
+    }
+
+    // stored times as of the last move; the side to move has been running since lastMoveAt
+    private static JSONObject clock(Game game) {
+        JSONObject clock = new JSONObject();
+        clock.put("whiteMs", game.getWhiteTimeMs());
+        clock.put("blackMs", game.getBlackTimeMs());
+        clock.put("running", game.getStatus() == Game.GameStatus.ACTIVE);
+        return clock;
+    }
+
+    private static String event(String type, long seq, JSONObject data) {
+        JSONObject message = new JSONObject();
+        message.put("type", type);
+        message.put("seq", seq);
+        message.put("data", data);
+        message.put("timestamp", System.currentTimeMillis());
+        return message.toString();
+    }
+}
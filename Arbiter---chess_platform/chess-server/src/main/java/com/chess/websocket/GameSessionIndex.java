@@ -0,0 +1,88 @@
+package com.chess.websocket;
+
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sessions grouped by game, so fan-out touches only the sessions watching that game. Adds and
+// removes go through compute on the game's entry, which also drops the entry once its last session
+// leaves without racing a concurrent add.
+public class GameSessionIndex {
+    private static final int DEEPEST_REPORTED = 10;
+
+    private final Map<String, Set<SessionHandle>> byGame = new ConcurrentHashMap<>();
+
+    public GameSessionIndex(String metricsName) {
+        MetricsRegistry.getInstance().register(metricsName, this::getMetrics);
+    }
+
+    public void add(SessionHandle handle) {
+        byGame.compute(handle.getGameCode(), (code, handles) -> {
+            Set<SessionHandle> set = handles != null ? handles : ConcurrentHashMap.newKeySet();
+            set.add(handle);
+            return set;
+        });
+    }
+
+    public void remove(SessionHandle handle) {
+        byGame.computeIfPresent(handle.getGameCode(), (code, handles) -> {
+            handles.remove(handle);
+            return handles.isEmpty() ? null : handles;
+        });
+    }
+
+    // A live view; iterating it while sessions come and go is safe.
+    public Set<SessionHandle> sessionsOf(String gameCode) {
+        Set<SessionHandle> handles = byGame.get(gameCode);
+        return handles != null ? handles : Collections.emptySet();
+    }
+
+    public boolean hasUserSession(String gameCode, int userId) {
+        for (SessionHandle handle : sessionsOf(gameCode)) {
+            if (handle.getUserId() == userId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public JSONObject getMetrics() {
+        // depths keep moving, so each backlogged session is read once and sorted on that snapshot
+        List<JSONObject> backlogged = new ArrayList<>();
+        int sessions = 0;
+        long queued = 0;
+        for (Set<SessionHandle> handles : byGame.values()) {
+            for (SessionHandle handle : handles) {
+                SessionSender sender = handle.getSender();
+                int depth = sender.getDepth();
+                sessions++;
+                queued += depth;
+                if (depth > 0) {
+                    backlogged.add(new JSONObject()
+                            .put("sessionId", handle.getSessionId())
+                            .put("gameCode", handle.getGameCode())
+                            .put("queueDepth", depth)
+                            .put("maxQueueDepth", sender.getMaxDepth())
+                            .put("lastSendMicros", sender.getLastSendMicros()));
+                }
+            }
+        }
+        backlogged.sort(Comparator.comparingInt((JSONObject s) -> s.getInt("queueDepth")).reversed());
+
+        JSONObject metrics = new JSONObject();
+        metrics.put("games", byGame.size());
+        metrics.put("sessions", sessions);
+        metrics.put("queuedFrames", queued);
+        metrics.put("backloggedSessions", backlogged.size());
+        int reported = Math.min(DEEPEST_REPORTED, backlogged.size());
+        metrics.put("deepestQueues", new JSONArray(backlogged.subList(0, reported)));
+        return metrics;
+    }
+}
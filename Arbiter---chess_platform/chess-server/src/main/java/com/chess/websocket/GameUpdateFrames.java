@@ -0,0 +1,44 @@
+package com.chess.websocket;
+
+import org.json.JSONObject;
+
+// The GAME_UPDATE frames for one broadcast. The game state is serialized once, and the three
+// variants differ only in yourSide, so each is spliced together on first use and then handed to
+// every session on that side as the same message.
+public class GameUpdateFrames {
+    private static final String[] SIDES = { "WHITE", "BLACK", "SPECTATOR" };
+
+    private final String state;
+    private final long timestamp = System.currentTimeMillis();
+    private final WireMessage[] frames = new WireMessage[SIDES.length];
+
+    public GameUpdateFrames(JSONObject gameState) {
+        this.state = gameState.toString();
+    }
+
+    public WireMessage forSide(String side) {
+        int index = indexOf(side);
+        WireMessage frame = frames[index];
+        if (frame == null) {
+            frame = new WireMessage(new StringBuilder(state.length() + 80)
+                    .append("{\"type\":\"GAME_UPDATE\",\"data\":").append(state)
+                    .append(",\"yourSide\":\"").append(SIDES[index])
+                    .append("\",\"timestamp\":").append(timestamp)
+                    .append('}')
+                    .toString());
+            frames[index] = frame;
+        }
+        return frame;
+    }
+
+    private static int indexOf(String side) {
+        switch (side) {
+            case "WHITE":
+                return 0;
+            case "BLACK":
+                return 1;
+            default:
+                return 2;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.chess.websocket;
+
+import com.chess.config.ServerConfig;
+import com.chess.dao.UserDAO;
+import com.chess.models.Game;
+import com.chess.models.User;
+import com.chess.service.AuthService;
+import com.chess.service.MatchmakingService;
+import com.chess.service.WaitingGamesIndex;
+import org.json.JSONObject;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+
+import java.io.IOException;
+
+@ServerEndpoint("/com/chess/lobby")
+public class LobbyWebSocketServer {
+    private static final SessionSender.Stats outbound = new SessionSender.Stats("websocket.lobby.outbound");
+    private static final ProtocolStats.Counters traffic =
+            new ProtocolStats("websocket.lobby.protocols").forEncoding(false);
+    private static final int outboundQueue = ServerConfig.getInstance().getInt("websocket.lobby.queue", 64);
+
+    private static AuthService authService;
+    private static MatchmakingService matchmakingService;
+    private static WaitingGamesIndex waitingGames;
+    private static UserDAO userDAO;
+
+    public static void setServices(AuthService authService, MatchmakingService matchmakingService,
+                                   WaitingGamesIndex waitingGames, UserDAO userDAO) {
+        LobbyWebSocketServer.authService = authService;
+        LobbyWebSocketServer.matchmakingService = matchmakingService;
+        LobbyWebSocketServer.waitingGames = waitingGames;
+        LobbyWebSocketServer.userDAO = userDAO;
+    }
+
+    @OnOpen
+    public void onOpen(Session session) {
+        try {
+            String token = getTokenFromQuery(session.getQueryString());
+
+            if (token == null || !authService.validateToken(token)) {
+                session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                        "Invalid token"));
+                return;
+            }
+
+            session.getUserProperties().put("userId", authService.getUserIdFromToken(token));
+            // waiting-game events are deltas, so a client that cannot keep up is dropped rather than skipped ahead
+            session.getUserProperties().put("sender", new SessionSender(session, outboundQueue,
+                    SessionSender.OverflowPolicy.DISCONNECT, outbound, traffic));
+            sendMessage(session, createMessage("CONNECTED", "Connected to lobby"));
+
+        } catch (Exception e) {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION,
+                        "Connection failed"));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    @OnMessage
+    public void onMessage(String message, Session session) {
+        traffic.received(message.length());
+        try {
+            int userId = (Integer) session.getUserProperties().get("userId");
+            String type = new JSONObject(message).getString("type");
+
+            switch (type) {
+                case "FIND_MATCH":
+                    handleFindMatch(userId, session);
+                    break;
+                case "CANCEL_MATCH":
+                    boolean cancelled = matchmakingService.cancel(userId);
+                    sendMessage(session, createMessage(cancelled ? "MATCH_CANCELLED" : "ERROR",
+                            cancelled ? "Left the queue" : "Not in the queue"));
+                    break;
+                case "SUBSCRIBE_WAITING":
+                    subscribeWaitingGames(session);
+                    break;
+                case "UNSUBSCRIBE_WAITING":
+                    unsubscribeWaitingGames(session);
+                    break;
+                default:
+                    sendMessage(session, createMessage("ERROR", "Unknown message type"));
+            }
+
+        } catch (Exception e) {
+            sendMessage(session, createMessage("ERROR", e.getMessage()));
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        Object userId = session.getUserProperties().get("userId");
+        if (userId != null) {
+            matchmakingService.cancel((Integer) userId);
+        }
+        unsubscribeWaitingGames(session);
+        Object sender = session.getUserProperties().get("sender");
+        if (sender != null) {
+            ((SessionSender) sender).close();
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable throwable) {
+        System.err.println("Lobby WebSocket error: " + throwable.getMessage());
+    }
+
+    private void handleFindMatch(int userId, Session session) throws Exception {
+        User user = userDAO.findById(userId);
+        if (user == null) {
+            sendMessage(session, createMessage("ERROR", "User not found"));
+            return;
+        }
+
+        sendMessage(session, createMessage("MATCH_SEARCHING", new JSONObject()
+                .put("rating", user.getRating())));
+
+        boolean queued = matchmakingService.enqueue(userId, user.getUsername(), user.getRating(),
+                new MatchmakingService.MatchListener() {
+                    @Override
+                    public void onMatched(Game game, String side, String opponent, int opponentRating) {
+                        sendMessage(session, createMessage("MATCH_FOUND", new JSONObject()
+                                .put("gameCode", game.getGameCode())
+                                .put("yourSide", side)
+                                .put("opponent", opponent)
+                                .put("opponentRating", opponentRating)));
+                    }
+
+                    @Override
+                    public void onMatchFailed(String reason) {
+                        sendMessage(session, createMessage("MATCH_FAILED", reason));
+                    }
+                });
+        if (!queued) {
+            sendMessage(session, createMessage("MATCH_FAILED", "A match is already being made"));
+        }
+    }
+
+    private void subscribeWaitingGames(Session session) {
+        if (session.getUserProperties().containsKey("waitingListener")) {
+            return;
+        }
+
+        WaitingGamesIndex.Listener listener = new WaitingGamesIndex.Listener() {
+            @Override
+            public void onSnapshot(JSONObject page) {
+                sendMessage(session, createMessage("WAITING_GAMES", page));
+            }
+
+            @Override
+            public void onAdded(JSONObject game) {
+                sendMessage(session, createMessage("WAITING_GAME_ADDED", game));
+            }
+
+            @Override
+            public void onRemoved(String gameCode) {
+                sendMessage(session, createMessage("WAITING_GAME_REMOVED", new JSONObject()
+                        .put("gameCode", gameCode)));
+            }
+        };
+
+        session.getUserProperties().put("waitingListener", listener);
+        waitingGames.subscribe(listener);
+    }
+
+    private void unsubscribeWaitingGames(Session session) {
+        Object listener = session.getUserProperties().remove("waitingListener");
+        if (listener != null) {
+            waitingGames.unsubscribe((WaitingGamesIndex.Listener) listener);
+        }
+    }
+
+    // The pairing thread, the waiting-games dispatcher and this session's own thread all write here;
+    // they only enqueue, so one slow lobby client cannot hold up the others.
+    private void sendMessage(Session session, JSONObject message) {
+        SessionSender sender = (SessionSender) session.getUserProperties().get("sender");
+        if (sender == null || !session.isOpen()) {
+            return;
+        }
+        sender.send(message.toString(), false);
+    }
+
+    private JSONObject createMessage(String type, Object data) {
+        JSONObject message = new JSONObject();
+        message.put("type", type);
+        message.put("data", data);
+        message.put("timestamp", System.currentTimeMillis());
+        return message;
+    }
+
+    private String getTokenFromQuery(String queryString) {
+        if (queryString == null)
+            return null;
+
+        String[] params = queryString.split("&");
+        for (String param : params) {
+            String[] pair = param.split("=");
+            if (pair.length == 2 && "token".equals(pair[0])) {
+                return pair[1];
+            }
+        }
+        return null;
+    }
+}
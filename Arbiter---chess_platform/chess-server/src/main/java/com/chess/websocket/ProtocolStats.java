@@ -0,0 +1,53 @@
+package com.chess.websocket;
+
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.util.concurrent.atomic.LongAdder;
+
+// Messages and payload sizes per wire protocol, in each direction. Text payloads are counted in
+// chars, which for the JSON this server sends is the byte count in all but rare cases.
+public class ProtocolStats {
+    public static final class Counters {
+        private final LongAdder messagesIn = new LongAdder();
+        private final LongAdder bytesIn = new LongAdder();
+        private final LongAdder messagesOut = new LongAdder();
+        private final LongAdder bytesOut = new LongAdder();
+
+        public void received(int bytes) {
+            messagesIn.increment();
+            bytesIn.add(bytes);
+        }
+
+        public void sent(int bytes) {
+            messagesOut.increment();
+            bytesOut.add(bytes);
+        }
+
+        private JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("messagesIn", messagesIn.sum());
+            json.put("bytesIn", bytesIn.sum());
+            json.put("messagesOut", messagesOut.sum());
+            json.put("bytesOut", bytesOut.sum());
+            return json;
+        }
+    }
+
+    private final Counters json = new Counters();
+    private final Counters binary = new Counters();
+
+    public ProtocolStats(String metricsName) {
+        MetricsRegistry.getInstance().register(metricsName, this::getMetrics);
+    }
+
+    public Counters forEncoding(boolean isBinary) {
+        return isBinary ? binary : json;
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("json", json.toJson());
+        metrics.put("binary", binary.toJson());
+        return metrics;
+    }
+}
@@ -0,0 +1,91 @@
+package com.chess.websocket;
+
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// The most recent events of each game in play, so a client that reconnects, or notices a gap, gets
+// only what it missed instead of a snapshot. Each game's ring holds a contiguous run of sequence
+// numbers: an event that does not follow the last one restarts it. A game's ring is dropped once the
+// game has finished or leaves the server's memory; after that a snapshot tells a client everything anyway.
+public class ReplayBuffers {
+    // only touched on the game's stripe
+    private static final class Ring {
+        final WireMessage[] events;
+        long firstSeq;
+        int count;
+
+        Ring(int capacity) {
+            this.events = new WireMessage[capacity];
+        }
+
+        long lastSeq() {
+            return firstSeq + count - 1;
+        }
+
+        void add(WireMessage event) {
+            if (count > 0 && event.getSeq() != lastSeq() + 1) {
+                count = 0;
+            }
+            if (count == 0) {
+                firstSeq = event.getSeq();
+            }
+            if (count == events.length) {
+                firstSeq++;
+                count--;
+            }
+            events[(int) ((firstSeq + count) % events.length)] = event;
+            count++;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    private final LongAdder resumed = new LongAdder();
+    private final LongAdder replayedEvents = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplayBuffers(String metricsName, int capacity) {
+        this.capacity = Math.max(1, capacity);
+        MetricsRegistry.getInstance().register(metricsName, this::getMetrics);
+    }
+
+    public void record(String gameCode, WireMessage event) {
+        rings.computeIfAbsent(gameCode, code -> new Ring(capacity)).add(event);
+    }
+
+    public void discard(String gameCode) {
+        rings.remove(gameCode);
+    }
+
+    // Sends the handle every event after since, if the ring reaches back that far and up to currentSeq.
+    // Returns false when it cannot, and the caller should send a snapshot instead.
+    public boolean replay(String gameCode, long since, long currentSeq, SessionHandle handle) {
+        Ring ring = rings.get(gameCode);
+        if (ring == null || ring.count == 0 || since + 1 < ring.firstSeq || ring.lastSeq() != currentSeq
+                || since > currentSeq) {
+            fallbacks.increment();
+            return false;
+        }
+
+        for (long seq = since + 1; seq <= currentSeq; seq++) {
+            handle.send(ring.events[(int) (seq % ring.events.length)], false);
+        }
+        resumed.increment();
+        replayedEvents.add(currentSeq - since);
+        return true;
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("games", rings.size());
+        metrics.put("capacity", capacity);
+        metrics.put("resumed", resumed.sum());
+        metrics.put("replayedEvents", replayedEvents.sum());
+        metrics.put("snapshotFallbacks", fallbacks.sum());
+        return metrics;
+    }
+}
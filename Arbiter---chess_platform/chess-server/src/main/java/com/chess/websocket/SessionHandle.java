@@ -0,0 +1,58 @@
+package com.chess.websocket;
+
+import jakarta.websocket.Session;
+
+// One connection to a game: the socket plus who is on the other end of it.
+public class SessionHandle {
+    private final String sessionId;
+    private final Session session;
+    private final SessionSender sender;
+    private final String gameCode;
+    private final int userId;
+    private final int protocol;
+    // a spectator who joins the game becomes a player, so the side is refreshed on each update
+    private volatile String side;
+
+    public SessionHandle(String sessionId, Session session, SessionSender sender, String gameCode, int userId,
+                         int protocol, String side) {
+        this.sessionId = sessionId;
+        this.session = session;
+        this.sender = sender;
+        this.gameCode = gameCode;
+        this.userId = userId;
+        this.protocol = protocol;
+        this.side = side;
+    }
+
+    public String getSessionId() { return sessionId; }
+
+    public Session getSession() { return session; }
+
+    public SessionSender getSender() { return sender; }
+
+    public String getGameCode() { return gameCode; }
+
+    public int getUserId() { return userId; }
+
+    // one of the GameEvents.PROTOCOL_ constants
+    public int getProtocol() { return protocol; }
+
+    public boolean isBinary() { return protocol == GameEvents.PROTOCOL_BINARY; }
+
+    // delta events rather than the full state on every update
+    public boolean wantsEvents() { return protocol >= GameEvents.PROTOCOL_DELTA; }
+
+    public String getSide() { return side; }
+
+    public void setSide(String side) { this.side = side; }
+
+    public boolean isOpen() { return session.isOpen(); }
+
+    public void send(WireMessage message, boolean conflatable) {
+        if (isBinary()) {
+            sender.send(message.binary(), conflatable);
+        } else {
+            sender.send(message.text(), conflatable);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.chess.websocket;
+
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+// Outbound frames for one session. Callers only enqueue; frames are written one at a time through
+// the async remote, each completion starting the next, so a slow client holds up nobody but itself.
+// The queue is bounded: when it is full a new GAME_UPDATE replaces the updates still waiting, since
+// each carries the whole game state, and anything else that does not fit closes the session.
+public class SessionSender {
+    // LATEST replaces waiting updates with a new one whether or not the queue is full
+    public enum OverflowPolicy { CONFLATE, DISCONNECT, LATEST }
+
+    // Counters shared by every sender of one endpoint.
+    public static final class Stats {
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder conflated = new LongAdder();
+        private final LongAdder overflowed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+        public Stats(String metricsName) {
+            MetricsRegistry.getInstance().register(metricsName, this::getMetrics);
+        }
+
+        public JSONObject getMetrics() {
+            JSONObject metrics = new JSONObject();
+            metrics.put("sent", sent.sum());
+            metrics.put("conflated", conflated.sum());
+            metrics.put("overflowDisconnects", overflowed.sum());
+            metrics.put("failed", failed.sum());
+            metrics.put("sendLatency", sendLatency.toJson());
+            return metrics;
+        }
+    }
+
+    private static final class Frame {
+        // a String for text frames, a shared ByteBuffer for binary ones
+        final Object payload;
+        final boolean conflatable;
+        final long queuedAt = System.nanoTime();
+
+        Frame(Object payload, boolean conflatable) {
+            this.payload = payload;
+            this.conflatable = conflatable;
+        }
+    }
+
+    private final Session session;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Stats stats;
+    private final ProtocolStats.Counters traffic;
+
+    // guarded by this
+    private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+    private boolean sending;
+    private boolean closed;
+    private int maxDepth;
+
+    private volatile long lastSendMicros;
+
+    public SessionSender(Session session, int capacity, OverflowPolicy policy, Stats stats,
+                         ProtocolStats.Counters traffic) {
+        this.session = session;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.stats = stats;
+        this.traffic = traffic;
+    }
+
+    // conflatable frames may be dropped in favour of a later conflatable frame when the queue is full
+    public void send(String text, boolean conflatable) {
+        enqueue(text, conflatable);
+    }
+
+    public void send(ByteBuffer binary, boolean conflatable) {
+        enqueue(binary, conflatable);
+    }
+
+    private void enqueue(Object payload, boolean conflatable) {
+        Frame next;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (policy == OverflowPolicy.LATEST && conflatable) {
+                dropConflatable();
+            }
+            if (queue.size() >= capacity && !makeRoom(conflatable)) {
+                closed = true;
+                queue.clear();
+                stats.overflowed.increment();
+                closeSlowSession();
+                return;
+            }
+            queue.add(new Frame(payload, conflatable));
+            maxDepth = Math.max(maxDepth, queue.size());
+            if (sending) {
+                return;
+            }
+            sending = true;
+            next = queue.poll();
+        }
+        write(next);
+    }
+
+    private boolean makeRoom(boolean conflatable) {
+        if (policy != OverflowPolicy.CONFLATE || !conflatable) {
+            return false;
+        }
+        dropConflatable();
+        return queue.size() < capacity;
+    }
+
+    private void dropConflatable() {
+        Iterator<Frame> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().conflatable) {
+                it.remove();
+                stats.conflated.increment();
+            }
+        }
+    }
+
+    private void write(Frame frame) {
+        try {
+            if (frame.payload instanceof ByteBuffer) {
+                ByteBuffer binary = ((ByteBuffer) frame.payload).duplicate();
+                session.getAsyncRemote().sendBinary(binary, result -> onWritten(frame, result));
+            } else {
+                session.getAsyncRemote().sendText((String) frame.payload, result -> onWritten(frame, result));
+            }
+        } catch (RuntimeException e) {
+            // the session closed under us; there is nothing left to deliver to
+            stats.failed.increment();
+            close();
+        }
+    }
+
+    private void onWritten(Frame frame, SendResult result) {
+        // measured from enqueue, so time spent behind earlier frames counts
+        long latency = System.nanoTime() - frame.queuedAt;
+        stats.sendLatency.recordNanos(latency);
+        lastSendMicros = latency / 1000;
+
+        if (!result.isOK()) {
+            stats.failed.increment();
+            close();
+            return;
+        }
+        stats.sent.increment();
+        traffic.sent(frame.payload instanceof ByteBuffer
+                ? ((ByteBuffer) frame.payload).remaining() : ((String) frame.payload).length());
+
+        Frame next;
+        synchronized (this) {
+            next = closed ? null : queue.poll();
+            if (next == null) {
+                sending = false;
+                return;
+            }
+        }
+        write(next);
+    }
+
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    // closing writes a close frame, which can block on the very client that is too slow, so not on the caller
+    private void closeSlowSession() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Too far behind"));
+            } catch (IOException e) {
+                System.err.println("Closing slow session failed: " + e.getMessage());
+            }
+        });
+    }
+
+    public synchronized int getDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getLastSendMicros() {
+        return lastSendMicros;
+    }
+}
@@ -0,0 +1,139 @@
+package com.chess.websocket;
+
+import com.chess.metrics.LatencyHistogram;
+import com.chess.metrics.MetricsRegistry;
+import org.json.JSONObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Spectators of the watch endpoint, kept apart from the players. A game's stripe serves its players
+// first and then only hands each update to a few writer threads, so the cost to the players is the
+// same for ten spectators as for ten thousand. Each writer keeps its own index of its share of the
+// spectators and walks only that, and a writer with no spectators of a game is not handed its
+// updates at all. An update that a newer one has already overtaken in the writer's queue is skipped,
+// and each spectator's sender keeps only the latest update it has not yet written.
+//
+// Spectators join and leave on the game's stripe, like players. A joining spectator's snapshot goes
+// through its writer, behind any update already queued there, so it can never be followed by an
+// older one.
+public class SpectatorHub {
+    private static final class Feed {
+        final AtomicLong published = new AtomicLong();
+        // the id of the newest conflatable update
+        volatile long latest;
+    }
+
+    private final Map<String, Feed> feeds = new ConcurrentHashMap<>();
+    private final ExecutorService[] writers;
+    // spectators[i] holds the sessions writer i delivers to
+    private final GameSessionIndex[] spectators;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder overtaken = new LongAdder();
+    private final LatencyHistogram fanOutLatency = new LatencyHistogram();
+
+    public SpectatorHub(int writerCount) {
+        this.writers = new ExecutorService[Math.max(1, writerCount)];
+        this.spectators = new GameSessionIndex[writers.length];
+        for (int i = 0; i < writers.length; i++) {
+            spectators[i] = new GameSessionIndex("websocket.spectators.writer-" + i);
+            String name = "spectator-writer-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        MetricsRegistry.getInstance().register("websocket.spectators.fanout", this::getMetrics);
+    }
+
+    // On the game's stripe.
+    public void add(SessionHandle handle, WireMessage snapshot) {
+        feeds.computeIfAbsent(handle.getGameCode(), code -> new Feed());
+        int writer = writerIndex(handle);
+        spectators[writer].add(handle);
+        writers[writer].execute(() -> handle.send(snapshot, true));
+    }
+
+    // On the game's stripe.
+    public void remove(SessionHandle handle) {
+        handle.getSender().close();
+        spectators[writerIndex(handle)].remove(handle);
+        for (GameSessionIndex share : spectators) {
+            if (!share.sessionsOf(handle.getGameCode()).isEmpty()) {
+                return;
+            }
+        }
+        feeds.remove(handle.getGameCode());
+    }
+
+    // A snapshot for one spectator that asked again, ordered like the one it got on joining.
+    public void resend(SessionHandle handle, WireMessage snapshot) {
+        writers[writerIndex(handle)].execute(() -> handle.send(snapshot, true));
+    }
+
+    public boolean isWatched(String gameCode) {
+        return feeds.containsKey(gameCode);
+    }
+
+    // On the game's stripe. Conflatable messages are game states, each superseding the one before.
+    public void publish(String gameCode, WireMessage message, boolean conflatable) {
+        Feed feed = feeds.get(gameCode);
+        if (feed == null) {
+            return;
+        }
+        long id = feed.published.incrementAndGet();
+        if (conflatable) {
+            feed.latest = id;
+        }
+        published.increment();
+
+        long publishedAt = System.nanoTime();
+        for (int i = 0; i < writers.length; i++) {
+            // membership only changes on this stripe, so an empty share cannot gain a spectator before this runs
+            if (spectators[i].sessionsOf(gameCode).isEmpty()) {
+                continue;
+            }
+            int writer = i;
+            writers[i].execute(() -> fanOut(writer, gameCode, feed, id, message, conflatable, publishedAt));
+        }
+    }
+
+    private void fanOut(int writer, String gameCode, Feed feed, long id, WireMessage message, boolean conflatable,
+                        long publishedAt) {
+        if (conflatable && feed.latest != id) {
+            overtaken.increment();
+            return;
+        }
+        for (SessionHandle handle : spectators[writer].sessionsOf(gameCode)) {
+            if (handle.isOpen()) {
+                handle.send(message, conflatable);
+            }
+        }
+        fanOutLatency.recordNanos(System.nanoTime() - publishedAt);
+    }
+
+    private int writerIndex(SessionHandle handle) {
+        return (handle.getSessionId().hashCode() & 0x7fffffff) % writers.length;
+    }
+
+    public void shutdown() {
+        for (ExecutorService writer : writers) {
+            writer.shutdownNow();
+        }
+    }
+
+    public JSONObject getMetrics() {
+        JSONObject metrics = new JSONObject();
+        metrics.put("watchedGames", feeds.size());
+        metrics.put("writers", writers.length);
+        metrics.put("published", published.sum());
+        metrics.put("overtaken", overtaken.sum());
+        metrics.put("fanOutLatency", fanOutLatency.toJson());
+        return metrics;
+    }
+}
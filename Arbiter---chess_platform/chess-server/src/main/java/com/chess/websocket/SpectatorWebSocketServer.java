@@ -0,0 +1,168 @@
+package com.chess.websocket;
+
+import com.chess.config.ServerConfig;
+import com.chess.models.Game;
+import com.chess.service.AuthService;
+import com.chess.service.GameService;
+import org.json.JSONObject;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.PathParam;
+import jakarta.websocket.server.ServerEndpoint;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Watch-only sessions for a game. Spectators get the game state as it changes, as GAME_UPDATE frames
+// like a protocol 1 client, but a slow spectator skips straight to the latest state instead of
+// falling behind. They cannot act on the game; SYNC asks for a fresh snapshot.
+@ServerEndpoint("/com/chess/watch/{gameCode}")
+public class SpectatorWebSocketServer {
+    private static final SessionSender.Stats outbound = new SessionSender.Stats("websocket.spectators.outbound");
+    private static final ProtocolStats.Counters traffic =
+            new ProtocolStats("websocket.spectators.protocols").forEncoding(false);
+    private static final int outboundQueue = ServerConfig.getInstance().getInt("websocket.spectator.queue", 8);
+    private static final AtomicInteger sessionIdCounter = new AtomicInteger(1);
+
+    private static AuthService authService;
+    private static GameService gameService;
+    private static SpectatorHub hub;
+
+    public static void setServices(AuthService authService, GameService gameService, SpectatorHub hub) {
+        SpectatorWebSocketServer.authService = authService;
+        SpectatorWebSocketServer.gameService = gameService;
+        SpectatorWebSocketServer.hub = hub;
+    }
+
+    @OnOpen
+    public void onOpen(Session session, @PathParam("gameCode") String gameCode) {
+        try {
+            String token = getQueryParam(session.getQueryString(), "token");
+
+            if (token == null || !authService.validateToken(token)) {
+                session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                        "Invalid token"));
+                return;
+            }
+
+            int userId = authService.getUserIdFromToken(token);
+            String sessionId = "watch-" + sessionIdCounter.getAndIncrement();
+            SessionSender sender = new SessionSender(session, outboundQueue, SessionSender.OverflowPolicy.LATEST,
+                    outbound, traffic);
+            SessionHandle handle = new SessionHandle(sessionId, session, sender, gameCode, userId,
+                    GameEvents.PROTOCOL_FULL_STATE, "SPECTATOR");
+
+            session.getUserProperties().put("handle", handle);
+
+            sendMessage(handle, createMessage("CONNECTED", "Watching game " + gameCode));
+
+            gameService.submit(gameCode, () -> attach(handle));
+
+        } catch (Exception e) {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.UNEXPECTED_CONDITION,
+                        "Connection failed"));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    @OnMessage
+    public void onMessage(String message, Session session) {
+        SessionHandle handle = (SessionHandle) session.getUserProperties().get("handle");
+        if (handle == null) {
+            return;
+        }
+        traffic.received(message.length());
+        try {
+            String type = new JSONObject(message).getString("type");
+            if ("SYNC".equals(type)) {
+                gameService.submit(handle.getGameCode(), () -> {
+                    WireMessage snapshot = snapshot(handle);
+                    if (snapshot != null) {
+                        hub.resend(handle, snapshot);
+                    }
+                });
+            } else {
+                sendMessage(handle, createMessage("ERROR", "Spectators cannot " + type));
+            }
+        } catch (Exception e) {
+            sendMessage(handle, createMessage("ERROR", e.getMessage()));
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        SessionHandle handle = (SessionHandle) session.getUserProperties().get("handle");
+
+        if (handle != null) {
+            handle.getSender().close();
+            gameService.submit(handle.getGameCode(), () -> hub.remove(handle));
+        }
+    }
+
+    @OnError
+    public void onError(Session session, Throwable throwable) {
+        System.err.println("Spectator WebSocket error: " + throwable.getMessage());
+    }
+
+    // on the game's stripe, like the player sessions
+    private void attach(SessionHandle handle) {
+        if (!handle.isOpen()) {
+            return;
+        }
+        WireMessage snapshot = snapshot(handle);
+        if (snapshot == null) {
+            sendMessage(handle, createMessage("ERROR", "Game not found"));
+            return;
+        }
+        hub.add(handle, snapshot);
+    }
+
+    private WireMessage snapshot(SessionHandle handle) {
+        try {
+            Game game = gameService.getGame(handle.getGameCode());
+            JSONObject gameState = gameService.getGameState(handle.getGameCode());
+            if (game == null || gameState == null) {
+                return null;
+            }
+            gameState.put("seq", GameEvents.sequenceOf(game));
+            return new GameUpdateFrames(gameState).forSide("SPECTATOR");
+        } catch (Exception e) {
+            System.err.println("Spectator snapshot for " + handle.getGameCode() + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void sendMessage(SessionHandle handle, JSONObject message) {
+        handle.send(new WireMessage(message.toString()), false);
+    }
+
+    private static JSONObject createMessage(String type, Object data) {
+        JSONObject message = new JSONObject();
+        message.put("type", type);
+        message.put("data", data);
+        message.put("timestamp", System.currentTimeMillis());
+        return message;
+    }
+
+    private String getQueryParam(String queryString, String name) {
+        if (queryString == null)
+            return null;
+
+        String[] params = queryString.split("&");
+        for (String param : params) {
+            String[] pair = param.split("=");
+            if (pair.length == 2 && name.equals(pair[0])) {
+                return pair[1];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package com.chess.websocket;
+
+import java.nio.ByteBuffer;
+
+// One outbound message in both encodings the game socket speaks. JSON sessions get the text; binary
+// sessions get the compact encoding when the message has one, otherwise the text in a JSON frame.
+// Each form is built at most once and shared by every session it goes to.
+public class WireMessage {
+    private final String text;
+    private final long seq;
+    private ByteBuffer binary;
+
+    public WireMessage(String text) {
+        this(text, null, -1);
+    }
+
+    public WireMessage(String text, ByteBuffer binary, long seq) {
+        this.text = text;
+        this.binary = binary;
+        this.seq = seq;
+    }
+
+    // the game event's sequence number, or -1 for messages outside the sequence
+    public long getSeq() {
+        return seq;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    // shared between sessions, so senders write a duplicate() rather than consuming it
+    public ByteBuffer binary() {
+        if (binary == null) {
+            binary = BinaryCodec.wrapJson(text);
+        }
+        return binary;
+    }
+}
@@ -15,7 +15,7 @@ CREATE TABLE IF NOT EXISTS users (
 
 CREATE TABLE IF NOT EXISTS games (
     game_id INT AUTO_INCREMENT PRIMARY KEY,
-    game_code VARCHAR(6) UNIQUE NOT NULL,
+    game_code VARCHAR(6) UNIQUE NULL,
     white_player_id INT,
     black_player_id INT,
     fen_position VARCHAR(100) DEFAULT 'rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1',
@@ -24,6 +24,10 @@ CREATE TABLE IF NOT EXISTS games (
     turn ENUM('WHITE', 'BLACK') DEFAULT 'WHITE',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     last_move_at TIMESTAMP NULL DEFAULT NULL,
+    time_base_ms BIGINT NOT NULL DEFAULT 0,
+    time_increment_ms BIGINT NOT NULL DEFAULT 0,
+    white_time_ms BIGINT NOT NULL DEFAULT 0,
+    black_time_ms BIGINT NOT NULL DEFAULT 0,
     FOREIGN KEY (white_player_id) REFERENCES users(user_id) ON DELETE SET NULL,
     FOREIGN KEY (black_player_id) REFERENCES users(user_id) ON DELETE SET NULL,
     INDEX idx_game_code (game_code),
@@ -31,6 +35,61 @@ CREATE TABLE IF NOT EXISTS games (
     INDEX idx_players (white_player_id, black_player_id)
 ) ENGINE=InnoDB;
 
+-- archived games give their code back; NULL codes are exempt from the UNIQUE constraint
+ALTER TABLE games MODIFY game_code VARCHAR(6) NULL;
+
+-- time controls; a base time of 0 leaves the game untimed
+ALTER TABLE games ADD COLUMN IF NOT EXISTS time_base_ms BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS time_increment_ms BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS white_time_ms BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS black_time_ms BIGINT NOT NULL DEFAULT 0;
+
+-- Glicko-2 ratings; rating_period is the last rating period that touched the row
+ALTER TABLE users ADD COLUMN IF NOT EXISTS rating_deviation DOUBLE NOT NULL DEFAULT 350;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS rating_volatility DOUBLE NOT NULL DEFAULT 0.06;
+ALTER TABLE users ADD COLUMN IF NOT EXISTS rating_period INT NOT NULL DEFAULT 0;
+
+ALTER TABLE games ADD INDEX IF NOT EXISTS idx_last_move_at (last_move_at);
+
+CREATE TABLE IF NOT EXISTS rating_periods (
+    period_id INT AUTO_INCREMENT PRIMARY KEY,
+    started_at TIMESTAMP NOT NULL,
+    ended_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP NULL DEFAULT NULL
+) ENGINE=InnoDB;
+
+-- pre-period ratings of the players in an open period, so an interrupted run resumes against them
+CREATE TABLE IF NOT EXISTS rating_period_snapshots (
+    period_id INT NOT NULL,
+    user_id INT NOT NULL,
+    rating INT NOT NULL,
+    rating_deviation DOUBLE NOT NULL,
+    rating_volatility DOUBLE NOT NULL,
+    PRIMARY KEY (period_id, user_id)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS game_code_sequence (
+    name VARCHAR(32) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+) ENGINE=InnoDB;
+
+INSERT IGNORE INTO game_code_sequence (name, next_value) VALUES ('game_code', 0);
+
+CREATE TABLE IF NOT EXISTS recycled_game_codes (
+    game_code VARCHAR(6) PRIMARY KEY,
+    recycled_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_recycled_at (recycled_at)
+) ENGINE=InnoDB;
+
+-- revoked auth tokens, kept until the token would have expired
+CREATE TABLE IF NOT EXISTS revoked_tokens (
+    revocation_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    token_id VARCHAR(64) NOT NULL UNIQUE,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_revoked_expires (expires_at)
+) ENGINE=InnoDB;
+
 CREATE TABLE IF NOT EXISTS moves (
     move_id INT AUTO_INCREMENT PRIMARY KEY,
     game_id INT NOT NULL,
@@ -0,0 +1,98 @@
+package com.chess.engine;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// Plays seeded random games on the bitboard engine and on chesslib side by side, and checks at every
+// ply that both agree on the set of legal moves, on check, mate and stalemate, and on the FEN.
+class ChesslibConformanceTest {
+    private static final int GAMES_PER_START = 40;
+    private static final int MAX_PLIES = 300;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            Position.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1",
+    })
+    void randomGamesAgreeWithChesslib(String startFen) {
+        Random random = new Random(startFen.hashCode());
+
+        for (int game = 0; game < GAMES_PER_START; game++) {
+            Position position = new Position(startFen);
+            Board board = new Board();
+            board.loadFromFen(startFen);
+            List<String> played = new ArrayList<>();
+
+            for (int ply = 0; ply < MAX_PLIES; ply++) {
+                String context = "game " + game + " from " + startFen + " after " + played;
+
+                int[] moves = new int[256];
+                int count = position.generateLegalMoves(moves);
+                List<Move> referenceMoves = board.legalMoves();
+
+                TreeSet<String> engineUci = new TreeSet<>();
+                boolean enPassantPossible = false;
+                for (int i = 0; i < count; i++) {
+                    engineUci.add(Moves.toUci(moves[i]));
+                    enPassantPossible |= Moves.flag(moves[i]) == Moves.FLAG_EN_PASSANT;
+                }
+                TreeSet<String> referenceUci = new TreeSet<>();
+                for (Move move : referenceMoves) {
+                    referenceUci.add(move.toString().toLowerCase());
+                }
+
+                assertEquals(referenceUci, engineUci, "legal moves, " + context);
+                assertEquals(board.isKingAttacked(), position.isInCheck(), "check, " + context);
+                assertEquals(board.isMated(), position.isCheckmate(), "checkmate, " + context);
+                assertEquals(board.isStaleMate(), position.isStalemate(), "stalemate, " + context);
+                // the en passant square only has to match when a capture there is legal; the
+                // move sets above already agree on whether one is
+                assertEquals(normalizeEnPassant(board.getFen(), enPassantPossible),
+                        normalizeEnPassant(position.toFen(), enPassantPossible), "FEN, " + context);
+
+                if (count == 0) {
+                    break;
+                }
+
+                int move = moves[random.nextInt(count)];
+                String uci = Moves.toUci(move);
+                Move reference = null;
+                for (Move candidate : referenceMoves) {
+                    if (candidate.toString().toLowerCase().equals(uci)) {
+                        reference = candidate;
+                        break;
+                    }
+                }
+                assertNotNull(reference, "chesslib move for " + uci + ", " + context);
+
+                // applyMove is what live games use, so its history handling is exercised too
+                position.applyMove(move);
+                board.doMove(reference);
+                played.add(uci);
+            }
+        }
+    }
+
+    private static String normalizeEnPassant(String fen, boolean enPassantPossible) {
+        if (enPassantPossible) {
+            return fen;
+        }
+        String[] fields = fen.split(" ");
+        fields[3] = "-";
+        return String.join(" ", fields);
+    }
+}
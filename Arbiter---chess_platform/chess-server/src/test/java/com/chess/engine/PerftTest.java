@@ -0,0 +1,57 @@
+package com.chess.engine;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Counts the leaf nodes of the legal move tree and checks them against published perft results. The
+// positions cover the usual trouble spots: castling through or out of check, en passant that exposes
+// the king, promotions with and without capture, and checks given by castling or promoting.
+class PerftTest {
+    @ParameterizedTest(name = "{0} depth {2}")
+    @CsvSource(delimiter = '|', value = {
+            "start position | rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 | 5 | 4865609",
+            "Kiwipete | r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 | 4 | 4085603",
+            "pinned en passant | 8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1 | 5 | 674624",
+            "promotions and castling | r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1 | 4 | 422333",
+            "promotion with capture | rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8 | 4 | 2103487",
+            "quiet middlegame | r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10 | 4 | 3894594",
+            "en passant exposing the king on a rank | 3k4/3p4/8/K1P4r/8/8/8/8 b - - 0 1 | 6 | 1134888",
+            "en passant exposing the king on a diagonal | 8/8/4k3/8/2p5/8/B2P2K1/8 w - - 0 1 | 6 | 1015133",
+            "en passant giving check | 8/8/1k6/2b5/2pP4/8/5K2/8 b - d3 0 1 | 6 | 1440467",
+            "short castling giving check | 5k2/8/8/8/8/8/8/4K2R w K - 0 1 | 6 | 661072",
+            "long castling giving check | 3k4/8/8/8/8/8/8/R3K3 w Q - 0 1 | 6 | 803711",
+            "castling rights lost by captures | r3k2r/1b4bq/8/8/8/8/7B/R3K2R w KQkq - 0 1 | 4 | 1274206",
+            "castling prevented by attacks | r3k2r/8/3Q4/8/8/5q2/8/R3K2R b KQkq - 0 1 | 4 | 1720476",
+            "promoting out of check | 2K2r2/4P3/8/8/8/8/8/3k4 w - - 0 1 | 6 | 3821001",
+            "discovered check | 8/8/1P2K3/8/2n5/1q6/8/5k2 b - - 0 1 | 5 | 1004658",
+            "promoting to give check | 4k3/1P6/8/8/8/8/K7/8 w - - 0 1 | 6 | 217342",
+            "underpromoting to give check | 8/P1k5/K7/8/8/8/8/8 w - - 0 1 | 6 | 92683",
+            "self stalemate | K1k5/8/P7/8/8/8/8/8 w - - 0 1 | 6 | 2217",
+            "stalemate and checkmate by promotion | 8/k1P5/8/1K6/8/8/8/8 w - - 0 1 | 7 | 567584",
+            "stalemate and checkmate | 8/8/2k5/5q2/5n2/8/5K2/8 b - - 0 1 | 4 | 23527",
+    })
+    void countsMatchPublishedResults(String name, String fen, int depth, long expected) {
+        Position position = new Position(fen);
+
+        assertEquals(expected, perft(position, depth, new int[depth][256]));
+        assertEquals(fen, position.toFen(), "make/unmake must restore the position");
+    }
+
+    private static long perft(Position position, int depth, int[][] buffers) {
+        int[] moves = buffers[depth - 1];
+        int count = position.generateLegalMoves(moves);
+        if (depth == 1) {
+            return count;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            nodes += perft(position, depth - 1, buffers);
+            position.unmakeMove();
+        }
+        return nodes;
+    }
+}
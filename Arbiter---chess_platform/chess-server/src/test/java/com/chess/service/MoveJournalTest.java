@@ -0,0 +1,170 @@
+package com.chess.service;
+
+import com.chess.models.Game;
+import com.chess.models.Move;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// Drives the journal against a writer that fails on demand: an outage must hold every entry and push
+// back on new moves until the database returns, while a bad entry is dead-lettered alone and takes
+// only its own game's later moves with it.
+class MoveJournalTest {
+    private MoveJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        if (journal != null) {
+            journal.shutdown();
+        }
+        System.clearProperty("journal.capacity");
+        System.clearProperty("journal.offer.timeout");
+    }
+
+    @Test
+    void connectionOutageHoldsEntriesUntilTheDatabaseReturns() throws Exception {
+        System.setProperty("journal.capacity", "4");
+        System.setProperty("journal.offer.timeout", "50");
+
+        FailingWriter writer = new FailingWriter();
+        writer.down = true;
+        List<Game> deadLetters = new CopyOnWriteArrayList<>();
+        journal = new MoveJournal(writer);
+        journal.setDeadLetterListener(deadLetters::add);
+
+        Game game = game(1);
+        for (int number = 1; number <= 4; number++) {
+            journal.reserve();
+            journal.append(move(game, number), game, false);
+        }
+
+        await(() -> writer.attempts.get() >= 3, "repeated flush attempts");
+        IllegalStateException busy = assertThrows(IllegalStateException.class, journal::reserve);
+        assertTrue(busy.getMessage().startsWith("Server is busy"), busy.getMessage());
+        assertTrue(journal.hasPending(1));
+
+        writer.down = false;
+        await(() -> writer.written.size() == 4, "all moves written");
+        await(() -> !journal.hasPending(1), "journal drained");
+
+        assertEquals(List.of("1:1", "1:2", "1:3", "1:4"), writer.written);
+        assertEquals(Collections.emptyList(), deadLetters);
+        assertEquals(0L, journal.getMetrics().getLong("deadLettered"));
+
+        journal.reserve();
+        journal.cancelReservation();
+    }
+
+    @Test
+    void rejectedEntryIsDeadLetteredAndItsGameStopsJournaling() throws Exception {
+        FailingWriter writer = new FailingWriter();
+        writer.rejected = "1:2";
+        List<Game> deadLetters = new CopyOnWriteArrayList<>();
+        journal = new MoveJournal(writer);
+        journal.setDeadLetterListener(deadLetters::add);
+
+        Game first = game(1);
+        Game second = game(2);
+        for (int number = 1; number <= 4; number++) {
+            journal.reserve();
+            journal.append(move(first, number), first, false);
+            journal.reserve();
+            journal.append(move(second, number), second, false);
+        }
+
+        await(() -> !journal.hasPending(1) && !journal.hasPending(2), "journal drained");
+
+        assertEquals(List.of("1:1"), writer.writtenFor(1));
+        assertEquals(List.of("2:1", "2:2", "2:3", "2:4"), writer.writtenFor(2));
+        assertEquals(1, deadLetters.size());
+        assertEquals(1, deadLetters.get(0).getGameId());
+        assertEquals(1L, journal.getMetrics().getLong("deadLettered"));
+        assertEquals(2L, journal.getMetrics().getLong("discarded"));
+
+        // what GameService does on the game's stripe once the live game is gone; the reloaded game then
+        // journals again from where the database left it
+        journal.discardPending(1);
+        writer.rejected = null;
+        journal.reserve();
+        journal.append(move(first, 2), first, false);
+        await(() -> writer.writtenFor(1).size() == 2, "reloaded game written");
+        assertEquals(List.of("1:1", "1:2"), writer.writtenFor(1));
+    }
+
+    private static Game game(int gameId) {
+        Game game = new Game("G" + gameId, 1);
+        game.setGameId(gameId);
+        game.setStatus(Game.GameStatus.ACTIVE);
+        return game;
+    }
+
+    private static Move move(Game game, int number) {
+        Move move = new Move();
+        move.setGameId(game.getGameId());
+        move.setMoveNumber(number);
+        return move;
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static final class FailingWriter implements MoveJournal.BatchWriter {
+        private final List<String> written = new CopyOnWriteArrayList<>();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile boolean down;
+        private volatile String rejected;
+
+        @Override
+        public void write(List<Move> moves, Collection<Game> games,
+                          Map<String, List<Integer>> statsByResult, List<Game> finishedGames)
+                throws SQLException {
+            attempts.incrementAndGet();
+            if (down) {
+                throw new SQLTransientConnectionException("Connection refused", "08S01");
+            }
+
+            List<String> keys = new ArrayList<>();
+            for (Move move : moves) {
+                String key = move.getGameId() + ":" + move.getMoveNumber();
+                if (key.equals(rejected)) {
+                    throw new SQLIntegrityConstraintViolationException("Duplicate entry", "23000", 1062);
+                }
+                keys.add(key);
+            }
+            written.addAll(keys);
+        }
+
+        private List<String> writtenFor(int gameId) {
+            List<String> keys = new ArrayList<>();
+            for (String key : written) {
+                if (key.startsWith(gameId + ":")) {
+                    keys.add(key);
+                }
+            }
+            return keys;
+        }
+    }
+}